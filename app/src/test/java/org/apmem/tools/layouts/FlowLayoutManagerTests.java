@@ -0,0 +1,351 @@
+package org.apmem.tools.layouts;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import junit.framework.Assert;
+import org.apmem.tools.layouts.logic.CommonLogic;
+import org.apmem.tools.layouts.logic.ConfigDefinition;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Ignore("written against stubs of RecyclerView and never run against recyclerview-v7, the expected values are not verified")
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = "src/main/AndroidManifest.xml", sdk = 21)
+public class FlowLayoutManagerTests {
+    TestActivity activity = Robolectric.setupActivity(TestActivity.class);
+
+    @Test
+    public void LargeAdapter_ChildCountBoundedByWindow() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        final ItemAdapter adapter = new ItemAdapter(10000, 50, 20);
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, adapter, 100, 100);
+        Assert.assertTrue(adapter.bindCount < 20);
+
+        for (int i = 0; i < 200; i++) {
+            recyclerView.scrollBy(0, 37);
+            // six lines of two items intersect the window
+            Assert.assertTrue(layoutManager.getChildCount() <= 12);
+        }
+        Assert.assertEquals(7400 / 20 * 2, layoutManager.findFirstVisibleItemPosition());
+    }
+
+    @Test
+    public void HorizontalOrientation_Scrolled_ChildrenInAdapterOrder() {
+        assertScrollKeepsChildrenInOrder(new ConfigDefinition(), 50, 20, 0, 37);
+    }
+
+    @Test
+    public void HorizontalOrientationRtl_Scrolled_ChildrenInAdapterOrder() {
+        final ConfigDefinition config = new ConfigDefinition();
+        config.setLayoutDirection(View.LAYOUT_DIRECTION_RTL);
+        assertScrollKeepsChildrenInOrder(config, 50, 20, 0, 37);
+    }
+
+    @Test
+    public void VerticalOrientation_Scrolled_ChildrenInAdapterOrder() {
+        final ConfigDefinition config = new ConfigDefinition();
+        config.setOrientation(CommonLogic.VERTICAL);
+        assertScrollKeepsChildrenInOrder(config, 20, 50, 37, 0);
+    }
+
+    @Test
+    public void VerticalOrientationRtl_Scrolled_ChildrenInAdapterOrder() {
+        final ConfigDefinition config = new ConfigDefinition();
+        config.setOrientation(CommonLogic.VERTICAL);
+        config.setLayoutDirection(View.LAYOUT_DIRECTION_RTL);
+        // columns go from the right edge to the left one
+        assertScrollKeepsChildrenInOrder(config, 20, 50, -37, 0);
+    }
+
+    @Test
+    public void CollectAdjacentPrefetchPositions_LinesEnteringWindow() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, new ItemAdapter(100, 50, 20), 100, 100);
+        recyclerView.scrollBy(0, 100);
+
+        final PrefetchRegistry before = new PrefetchRegistry();
+        layoutManager.collectAdjacentPrefetchPositions(0, -30, new RecyclerView.State(), before);
+        Assert.assertEquals(Arrays.asList(8, 9, 6, 7), before.positions);
+        Assert.assertEquals(Arrays.asList(0, 0, 20, 20), before.distances);
+
+        recyclerView.scrollBy(0, -100);
+        final PrefetchRegistry after = new PrefetchRegistry();
+        layoutManager.collectAdjacentPrefetchPositions(0, 30, new RecyclerView.State(), after);
+        Assert.assertEquals(Arrays.asList(10, 11, 12, 13), after.positions);
+        Assert.assertEquals(Arrays.asList(0, 0, 20, 20), after.distances);
+    }
+
+    @Test
+    public void ScrollToPositionWithOffset_LineStartsAtOffset() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, new ItemAdapter(1000, 50, 20), 100, 100);
+
+        layoutManager.scrollToPositionWithOffset(51, 15);
+        layout(recyclerView, 100, 100);
+
+        Assert.assertEquals(15, layoutManager.findViewByPosition(50).getTop());
+        Assert.assertEquals(15, layoutManager.findViewByPosition(51).getTop());
+        Assert.assertEquals(48, layoutManager.findFirstVisibleItemPosition());
+        assertChildrenInAdapterOrder(layoutManager);
+    }
+
+    @Test
+    public void SaveState_Restored_SameAnchor() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, new ItemAdapter(1000, 50, 20), 100, 100);
+        layoutManager.scrollToPositionWithOffset(51, 15);
+        layout(recyclerView, 100, 100);
+
+        final Parcel parcel = Parcel.obtain();
+        layoutManager.onSaveInstanceState().writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        final Parcelable state = FlowLayoutManager.SavedState.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        final FlowLayoutManager restored = new FlowLayoutManager();
+        restored.onRestoreInstanceState(state);
+        createRecyclerView(restored, new ItemAdapter(1000, 50, 20), 100, 100);
+
+        Assert.assertEquals(15, restored.findViewByPosition(50).getTop());
+        Assert.assertEquals(48, restored.findFirstVisibleItemPosition());
+        assertChildrenInAdapterOrder(restored);
+    }
+
+    @Test
+    public void ItemChangedBeforeWindow_ScrolledBeforeLayout_ChildrenInAdapterOrder() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        final ItemAdapter adapter = new ItemAdapter(200, 50, 20);
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, adapter, 100, 100);
+        layoutManager.scrollToPositionWithOffset(100, 0);
+        layout(recyclerView, 100, 100);
+
+        // an update of a view which is not attached is applied without a layout pass before the scroll
+        adapter.notifyItemChanged(0);
+        recyclerView.scrollBy(0, 30);
+
+        assertChildrenInAdapterOrder(layoutManager);
+        Assert.assertEquals(102, layoutManager.findFirstVisibleItemPosition());
+        Assert.assertEquals(-10, layoutManager.findViewByPosition(102).getTop());
+    }
+
+    @Test
+    public void ScrollToFarPosition_OnlyWindowBound() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        final ItemAdapter adapter = new ItemAdapter(10000, 50, 20);
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, adapter, 100, 100);
+        adapter.bindCount = 0;
+
+        layoutManager.scrollToPositionWithOffset(9000, 0);
+        layout(recyclerView, 100, 100);
+
+        Assert.assertEquals(9000, layoutManager.findFirstVisibleItemPosition());
+        // five lines of two items are visible, the items before them are not bound
+        Assert.assertTrue(adapter.bindCount < 20);
+    }
+
+    @Test
+    public void SaveState_ManyLinesBeforeAnchor_OnlyAnchorSaved() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, new ItemAdapter(10000, 50, 20), 100, 100);
+        layoutManager.scrollToPositionWithOffset(9000, 0);
+        layout(recyclerView, 100, 100);
+
+        final Parcel parcel = Parcel.obtain();
+        layoutManager.onSaveInstanceState().writeToParcel(parcel, 0);
+        Assert.assertTrue(parcel.dataSize() < 100);
+        parcel.setDataPosition(0);
+        final Parcelable state = FlowLayoutManager.SavedState.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        final FlowLayoutManager restored = new FlowLayoutManager();
+        restored.onRestoreInstanceState(state);
+        createRecyclerView(restored, new ItemAdapter(10000, 50, 20), 100, 100);
+        Assert.assertEquals(9000, restored.findFirstVisibleItemPosition());
+    }
+
+    @Test
+    public void StickyHeaders_HeaderLineAttached_MovedInPlace() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        layoutManager.setStickyHeaders(true);
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, createSectionAdapter(), 100, 100);
+
+        recyclerView.scrollBy(0, 10);
+
+        // the header line is partly visible, its view is pinned without changing the child order
+        final View header = layoutManager.getChildAt(0);
+        Assert.assertEquals(0, layoutManager.getPosition(header));
+        Assert.assertEquals(0, header.getTop());
+        Assert.assertEquals(10, layoutManager.findViewByPosition(1).getTop());
+        assertChildrenInAdapterOrder(layoutManager);
+    }
+
+    @Test
+    public void StickyHeaders_HeaderLineRecycled_ExtraViewAfterLines() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        layoutManager.setStickyHeaders(true);
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, createSectionAdapter(), 100, 100);
+
+        recyclerView.scrollBy(0, 30);
+
+        final int childCount = layoutManager.getChildCount();
+        final View header = layoutManager.getChildAt(childCount - 1);
+        Assert.assertEquals(0, layoutManager.getPosition(header));
+        Assert.assertEquals(0, header.getTop());
+        Assert.assertSame(header, layoutManager.findViewByPosition(0));
+        Assert.assertEquals(1, layoutManager.getPosition(layoutManager.getChildAt(0)));
+        for (int i = 1; i < childCount - 1; i++) {
+            Assert.assertEquals(i + 1, layoutManager.getPosition(layoutManager.getChildAt(i)));
+        }
+        Assert.assertEquals(5, layoutManager.getPosition(layoutManager.findViewByPosition(5)));
+
+        // the next header pushes it out
+        recyclerView.scrollBy(0, 80);
+        Assert.assertEquals(-10, layoutManager.findViewByPosition(0).getTop());
+
+        // back in its line, the extra view is gone
+        recyclerView.scrollBy(0, -110);
+        Assert.assertEquals(0, layoutManager.getPosition(layoutManager.getChildAt(0)));
+        Assert.assertEquals(0, layoutManager.getChildAt(0).getTop());
+        assertChildrenInAdapterOrder(layoutManager);
+    }
+
+    @Test
+    public void StickyHeaders_ItemRemovedWithAnimations_HeaderBoundOnce() {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager();
+        layoutManager.setStickyHeaders(true);
+        final ItemAdapter adapter = createSectionAdapter();
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, adapter, 100, 100);
+        recyclerView.scrollBy(0, 30);
+
+        adapter.removeItem(3);
+        layout(recyclerView, 100, 100);
+
+        int headerViews = 0;
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            if (recyclerView.getChildLayoutPosition(recyclerView.getChildAt(i)) == 0) {
+                headerViews++;
+            }
+        }
+        Assert.assertEquals(1, headerViews);
+        Assert.assertEquals(0, layoutManager.findViewByPosition(0).getTop());
+    }
+
+    private void assertScrollKeepsChildrenInOrder(ConfigDefinition config, int itemWidth, int itemHeight, int dx, int dy) {
+        final FlowLayoutManager layoutManager = new FlowLayoutManager(config);
+        final RecyclerView recyclerView = createRecyclerView(layoutManager, new ItemAdapter(1000, itemWidth, itemHeight), 100, 100);
+        for (int i = 0; i < 50; i++) {
+            recyclerView.scrollBy(dx, dy);
+            assertChildrenInAdapterOrder(layoutManager);
+        }
+        Assert.assertEquals(50 * 37 / 20 * 2, layoutManager.findFirstVisibleItemPosition());
+
+        for (int i = 0; i < 50; i++) {
+            recyclerView.scrollBy(-dx, -dy);
+            assertChildrenInAdapterOrder(layoutManager);
+        }
+        Assert.assertEquals(0, layoutManager.findFirstVisibleItemPosition());
+    }
+
+    /**
+     * Sections of a full line header and five lines of items, 120 pixels each.
+     */
+    private static ItemAdapter createSectionAdapter() {
+        final ItemAdapter adapter = new ItemAdapter(100, 50, 20);
+        adapter.setFullLineEvery(10);
+        return adapter;
+    }
+
+    private RecyclerView createRecyclerView(FlowLayoutManager layoutManager, ItemAdapter adapter, int width, int height) {
+        final RecyclerView recyclerView = new RecyclerView(activity);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+        activity.setContentView(recyclerView);
+        layout(recyclerView, width, height);
+        return recyclerView;
+    }
+
+    private static void layout(RecyclerView recyclerView, int width, int height) {
+        recyclerView.measure(
+                View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY)
+        );
+        recyclerView.layout(0, 0, width, height);
+    }
+
+    private static void assertChildrenInAdapterOrder(RecyclerView.LayoutManager layoutManager) {
+        Assert.assertTrue(layoutManager.getChildCount() > 0);
+        for (int i = 1; i < layoutManager.getChildCount(); i++) {
+            Assert.assertEquals(layoutManager.getPosition(layoutManager.getChildAt(i - 1)) + 1, layoutManager.getPosition(layoutManager.getChildAt(i)));
+        }
+    }
+
+    static class PrefetchRegistry implements RecyclerView.LayoutManager.LayoutPrefetchRegistry {
+        final List<Integer> positions = new ArrayList<>();
+        final List<Integer> distances = new ArrayList<>();
+
+        @Override
+        public void addPosition(int layoutPosition, int pixelDistance) {
+            this.positions.add(layoutPosition);
+            this.distances.add(pixelDistance);
+        }
+    }
+
+    /**
+     * Items of the same given size, full line items are section headers as tall as the other items.
+     */
+    static class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+        private int itemCount;
+        private final int itemWidth;
+        private final int itemHeight;
+        private int fullLineEvery;
+        int bindCount;
+
+        ItemAdapter(int itemCount, int itemWidth, int itemHeight) {
+            this.itemCount = itemCount;
+            this.itemWidth = itemWidth;
+            this.itemHeight = itemHeight;
+        }
+
+        /**
+         * Every n-th item, starting with the first one, is a full line item.
+         */
+        void setFullLineEvery(int fullLineEvery) {
+            this.fullLineEvery = fullLineEvery;
+        }
+
+        void removeItem(int position) {
+            this.itemCount--;
+            notifyItemRemoved(position);
+        }
+
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+            return new RecyclerView.ViewHolder(new View(parent.getContext())) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
+            this.bindCount++;
+            final FlowLayoutManager.LayoutParams params = new FlowLayoutManager.LayoutParams(this.itemWidth, this.itemHeight);
+            params.setFullLine(this.fullLineEvery > 0 && position % this.fullLineEvery == 0);
+            holder.itemView.setLayoutParams(params);
+        }
+
+        @Override
+        public int getItemCount() {
+            return this.itemCount;
+        }
+    }
+}
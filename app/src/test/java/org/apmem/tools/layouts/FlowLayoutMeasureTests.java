@@ -111,4 +111,69 @@ public class FlowLayoutMeasureTests {
         Assert.assertEquals(34, layout.getMeasuredWidth());
         Assert.assertEquals(46, layout.getMeasuredHeight());
     }
+
+    @Test
+    public void SameSpecs_MeasuredAgain_LinesReused() {
+        final FlowLayout layout = new FlowLayout(activity.getApplicationContext());
+
+        final int[] paramsReadCount = new int[1];
+        final View child = new View(activity) {
+            @Override
+            public ViewGroup.LayoutParams getLayoutParams() {
+                paramsReadCount[0]++;
+                return super.getLayoutParams();
+            }
+        };
+        child.setLayoutParams(new FlowLayout.LayoutParams(30, 40));
+        layout.addView(child);
+
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.AT_MOST);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.AT_MOST);
+        layout.measure(widthSpec, heightSpec);
+        layout.layout(0, 0, layout.getMeasuredWidth(), layout.getMeasuredHeight());
+
+        // a pass of the layout alone, the lines are built once
+        layout.requestLayout();
+        paramsReadCount[0] = 0;
+        layout.measure(widthSpec, heightSpec);
+        layout.measure(widthSpec, heightSpec);
+
+        Assert.assertEquals(1, paramsReadCount[0]);
+        Assert.assertEquals(30, layout.getMeasuredWidth());
+
+        // requests of the child do not reach the layout, its own request is pending
+        child.setLayoutParams(new FlowLayout.LayoutParams(50, 40));
+        layout.measure(widthSpec, heightSpec);
+
+        Assert.assertEquals(50, layout.getMeasuredWidth());
+
+        // the child already waits for a layout and changes again
+        child.setLayoutParams(new FlowLayout.LayoutParams(70, 40));
+        layout.measure(widthSpec, heightSpec);
+
+        Assert.assertEquals(70, layout.getMeasuredWidth());
+    }
+
+    @Test
+    public void ChildNotStretched_MeasuredOnce() {
+        final FlowLayout layout = new FlowLayout(activity.getApplicationContext());
+
+        final int[] measureCount = new int[1];
+        final View child = new View(activity) {
+            @Override
+            protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+                measureCount[0]++;
+                super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            }
+        };
+        child.setLayoutParams(new FlowLayout.LayoutParams(30, 40));
+        layout.addView(child);
+
+        layout.measure(
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.AT_MOST),
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.AT_MOST)
+        );
+
+        Assert.assertEquals(1, measureCount[0]);
+    }
 }
@@ -0,0 +1,36 @@
+package org.apmem.tools.layouts;
+
+import android.view.Gravity;
+import android.view.View;
+import junit.framework.Assert;
+import org.apmem.tools.layouts.logic.CommonLogic;
+import org.apmem.tools.layouts.logic.LayoutGravity;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class LayoutGravityTests {
+    @Test
+    public void CoreConstants_SameAsAndroid() {
+        Assert.assertEquals(Gravity.AXIS_PULL_BEFORE, LayoutGravity.AXIS_PULL_BEFORE);
+        Assert.assertEquals(Gravity.AXIS_PULL_AFTER, LayoutGravity.AXIS_PULL_AFTER);
+        Assert.assertEquals(Gravity.AXIS_CLIP, LayoutGravity.AXIS_CLIP);
+        Assert.assertEquals(Gravity.AXIS_Y_SHIFT, LayoutGravity.AXIS_Y_SHIFT);
+        Assert.assertEquals(Gravity.FILL, LayoutGravity.FILL);
+        Assert.assertEquals(Gravity.CENTER, LayoutGravity.CENTER);
+        Assert.assertEquals(Gravity.CLIP_VERTICAL | Gravity.CLIP_HORIZONTAL, LayoutGravity.CLIP_VERTICAL | LayoutGravity.CLIP_HORIZONTAL);
+        Assert.assertEquals(Gravity.START, LayoutGravity.START);
+        Assert.assertEquals(Gravity.END, LayoutGravity.END);
+        Assert.assertEquals(Gravity.HORIZONTAL_GRAVITY_MASK, LayoutGravity.HORIZONTAL_GRAVITY_MASK);
+        Assert.assertEquals(Gravity.VERTICAL_GRAVITY_MASK, LayoutGravity.VERTICAL_GRAVITY_MASK);
+
+        Assert.assertEquals(View.LAYOUT_DIRECTION_LTR, CommonLogic.LAYOUT_DIRECTION_LTR);
+        Assert.assertEquals(View.LAYOUT_DIRECTION_RTL, CommonLogic.LAYOUT_DIRECTION_RTL);
+        Assert.assertEquals(View.MeasureSpec.UNSPECIFIED, CommonLogic.MODE_UNSPECIFIED);
+        Assert.assertEquals(View.MeasureSpec.EXACTLY, CommonLogic.MODE_EXACTLY);
+        Assert.assertEquals(View.MeasureSpec.AT_MOST, CommonLogic.MODE_AT_MOST);
+    }
+}
@@ -0,0 +1,425 @@
+package org.apmem.tools.layouts.logic;
+
+import java.util.List;
+
+public class CommonLogic {
+    public static final int HORIZONTAL = 0;
+    public static final int VERTICAL = 1;
+    public static final int LAYOUT_DIRECTION_LTR = 0;
+    public static final int LAYOUT_DIRECTION_RTL = 1;
+
+    /**
+     * Size modes of the config, the same values as the modes of android.view.View.MeasureSpec.
+     */
+    public static final int MODE_UNSPECIFIED = 0;
+    public static final int MODE_EXACTLY = 1 << 30;
+    public static final int MODE_AT_MOST = 2 << 30;
+
+    public static void calculateLinesAndChildPosition(List<LineDefinition> lines) {
+        final int linesCount = lines.size();
+        if (linesCount <= 0) {
+            return;
+        }
+        final boolean horizontal = lines.get(0).getConfig().getOrientation() == CommonLogic.HORIZONTAL;
+
+        int prevLinesThickness = 0;
+        for (int i = 0; i < linesCount; i++) {
+            final LineDefinition line = lines.get(i);
+            line.setLineStartThickness(prevLinesThickness);
+            prevLinesThickness += line.getLineThickness();
+            if (horizontal) {
+                calculateHorizontalChildPosition(line.getViews());
+            } else {
+                calculateVerticalChildPosition(line.getViews());
+            }
+        }
+    }
+
+    private static void calculateHorizontalChildPosition(List<ViewDefinition> childViews) {
+        int prevChildLength = 0;
+        final int childCount = childViews.size();
+        for (int j = 0; j < childCount; j++) {
+            final ViewDefinition child = childViews.get(j);
+            child.setInlineStartLength(prevChildLength);
+            prevChildLength += child.getWidth() + child.getLeftMargin() + child.getRightMargin();
+        }
+    }
+
+    private static void calculateVerticalChildPosition(List<ViewDefinition> childViews) {
+        int prevChildLength = 0;
+        final int childCount = childViews.size();
+        for (int j = 0; j < childCount; j++) {
+            final ViewDefinition child = childViews.get(j);
+            child.setInlineStartLength(prevChildLength);
+            prevChildLength += child.getHeight() + child.getTopMargin() + child.getBottomMargin();
+        }
+    }
+
+    public static void applyGravityToLines(List<LineDefinition> lines, int realControlLength, int realControlThickness, ConfigDefinition config) {
+        final int linesCount = lines.size();
+        if (linesCount <= 0) {
+            return;
+        }
+
+        int remainingWeight = linesCount;
+        LineDefinition lastLine = lines.get(linesCount - 1);
+        int excessThickness = realControlThickness - (lastLine.getLineThickness() + lastLine.getLineStartThickness());
+
+        if (excessThickness < 0) {
+            excessThickness = 0;
+        }
+
+        int excessOffset = 0;
+        for (int i = 0; i < linesCount; i++) {
+            final LineDefinition child = lines.get(i);
+            int weight = 1;
+            int gravity = config.getResolvedGravity();
+            int extraThickness = Math.round(excessThickness * weight / remainingWeight);
+
+            excessThickness -= extraThickness;
+            remainingWeight -= weight;
+
+            final int childLength = child.getLineLength();
+            final int childThickness = child.getLineThickness();
+
+            final int lengthGravity = gravity >> LayoutGravity.AXIS_X_SHIFT;
+            final int thicknessGravity = gravity >> LayoutGravity.AXIS_Y_SHIFT;
+            final int containerStart = excessOffset;
+            final int containerEnd = childThickness + extraThickness + excessOffset;
+            final int start = alignStart(lengthGravity, childLength, 0, realControlLength);
+            final int top = alignStart(thicknessGravity, childThickness, containerStart, containerEnd);
+
+            excessOffset += extraThickness;
+            child.setLineStartLength(child.getLineStartLength() + start);
+            child.setLineStartThickness(child.getLineStartThickness() + top);
+            child.setLength(alignEnd(lengthGravity, childLength, 0, realControlLength) - start);
+            child.setThickness(alignEnd(thicknessGravity, childThickness, containerStart, containerEnd) - top);
+
+            applyGravityToLine(child, config);
+        }
+    }
+
+    public static void applyGravityToLine(LineDefinition line, ConfigDefinition config) {
+        final List<ViewDefinition> views = line.getViews();
+        final int viewCount = views.size();
+        if (viewCount <= 0) {
+            return;
+        }
+
+        float remainingWeight = 0;
+        for (int i = 0; i < viewCount; i++) {
+            final ViewDefinition child = views.get(i);
+            remainingWeight += getWeight(child, config);
+        }
+
+        if (config.getOrientation() == CommonLogic.HORIZONTAL) {
+            applyGravityToHorizontalLine(line, views, remainingWeight, config);
+        } else {
+            applyGravityToVerticalLine(line, views, remainingWeight, config);
+        }
+    }
+
+    /**
+     * Gravity pass of {@link #applyGravityToLine} for horizontal lines, length is the width and thickness is the height.
+     */
+    private static void applyGravityToHorizontalLine(LineDefinition line, List<ViewDefinition> views, float remainingWeight, ConfigDefinition config) {
+        final int viewCount = views.size();
+        final boolean weightBased = remainingWeight > 0;
+        final int lineThickness = line.getLineThickness();
+
+        ViewDefinition lastChild = views.get(viewCount - 1);
+        int excessLengthRemaining = line.getLineLength() - (lastChild.getWidth() + lastChild.getLeftMargin() + lastChild.getRightMargin() + lastChild.getInlineStartLength());
+        int excessOffset = 0;
+        for (int i = 0; i < viewCount; i++) {
+            final ViewDefinition child = views.get(i);
+            float weight = getWeight(child, config);
+            int gravity = getGravity(child, config);
+            int extraLength;
+            if (!weightBased) {
+                extraLength = excessLengthRemaining / (viewCount - i);
+            } else {
+                extraLength = Math.round(excessLengthRemaining * weight / remainingWeight);
+                remainingWeight -= weight;
+            }
+            excessLengthRemaining -= extraLength;
+
+            final int spacingLength = child.getLeftMargin() + child.getRightMargin();
+            final int spacingThickness = child.getTopMargin() + child.getBottomMargin();
+            final int childLength = child.getWidth() + spacingLength;
+            final int childThickness = child.getHeight() + spacingThickness;
+
+            final int lengthGravity = gravity >> LayoutGravity.AXIS_X_SHIFT;
+            final int thicknessGravity = gravity >> LayoutGravity.AXIS_Y_SHIFT;
+            final int containerEnd = childLength + extraLength + excessOffset;
+            final int start = alignStart(lengthGravity, childLength, excessOffset, containerEnd);
+            final int top = alignStart(thicknessGravity, childThickness, 0, lineThickness);
+
+            child.setInlineStartLength(start + child.getInlineStartLength());
+            child.setInlineStartThickness(top);
+            child.setWidth(alignEnd(lengthGravity, childLength, excessOffset, containerEnd) - start - spacingLength);
+            child.setHeight(alignEnd(thicknessGravity, childThickness, 0, lineThickness) - top - spacingThickness);
+            excessOffset += extraLength;
+        }
+    }
+
+    /**
+     * Gravity pass of {@link #applyGravityToLine} for vertical lines, length is the height and thickness is the width.
+     */
+    private static void applyGravityToVerticalLine(LineDefinition line, List<ViewDefinition> views, float remainingWeight, ConfigDefinition config) {
+        final int viewCount = views.size();
+        final boolean weightBased = remainingWeight > 0;
+        final int lineThickness = line.getLineThickness();
+
+        ViewDefinition lastChild = views.get(viewCount - 1);
+        int excessLengthRemaining = line.getLineLength() - (lastChild.getHeight() + lastChild.getTopMargin() + lastChild.getBottomMargin() + lastChild.getInlineStartLength());
+        int excessOffset = 0;
+        for (int i = 0; i < viewCount; i++) {
+            final ViewDefinition child = views.get(i);
+            float weight = getWeight(child, config);
+            int gravity = getGravity(child, config);
+            int extraLength;
+            if (!weightBased) {
+                extraLength = excessLengthRemaining / (viewCount - i);
+            } else {
+                extraLength = Math.round(excessLengthRemaining * weight / remainingWeight);
+                remainingWeight -= weight;
+            }
+            excessLengthRemaining -= extraLength;
+
+            final int spacingLength = child.getTopMargin() + child.getBottomMargin();
+            final int spacingThickness = child.getLeftMargin() + child.getRightMargin();
+            final int childLength = child.getHeight() + spacingLength;
+            final int childThickness = child.getWidth() + spacingThickness;
+
+            final int lengthGravity = gravity >> LayoutGravity.AXIS_X_SHIFT;
+            final int thicknessGravity = gravity >> LayoutGravity.AXIS_Y_SHIFT;
+            final int containerEnd = childLength + extraLength + excessOffset;
+            final int start = alignStart(lengthGravity, childLength, excessOffset, containerEnd);
+            final int top = alignStart(thicknessGravity, childThickness, 0, lineThickness);
+
+            child.setInlineStartLength(start + child.getInlineStartLength());
+            child.setInlineStartThickness(top);
+            child.setHeight(alignEnd(lengthGravity, childLength, excessOffset, containerEnd) - start - spacingLength);
+            child.setWidth(alignEnd(thicknessGravity, childThickness, 0, lineThickness) - top - spacingThickness);
+            excessOffset += extraLength;
+        }
+    }
+
+    /**
+     * Start of an item placed into [containerStart, containerEnd) along one axis, the same as android.view.Gravity.apply gives
+     * without allocating rectangles.
+     *
+     * @param axisGravity gravity shifted by {@link LayoutGravity#AXIS_X_SHIFT} or {@link LayoutGravity#AXIS_Y_SHIFT}
+     */
+    static int alignStart(int axisGravity, int size, int containerStart, int containerEnd) {
+        final boolean clip = (axisGravity & LayoutGravity.AXIS_CLIP) != 0;
+        switch (axisGravity & (LayoutGravity.AXIS_PULL_BEFORE | LayoutGravity.AXIS_PULL_AFTER)) {
+            case 0: {
+                final int start = containerStart + (containerEnd - containerStart - size) / 2;
+                return clip ? Math.max(start, containerStart) : start;
+            }
+            case LayoutGravity.AXIS_PULL_AFTER: {
+                final int start = containerEnd - size;
+                return clip ? Math.max(start, containerStart) : start;
+            }
+            default:
+                // start gravity and fill
+                return containerStart;
+        }
+    }
+
+    /**
+     * End of an item placed into [containerStart, containerEnd) along one axis, see {@link #alignStart(int, int, int, int)}.
+     */
+    static int alignEnd(int axisGravity, int size, int containerStart, int containerEnd) {
+        final boolean clip = (axisGravity & LayoutGravity.AXIS_CLIP) != 0;
+        switch (axisGravity & (LayoutGravity.AXIS_PULL_BEFORE | LayoutGravity.AXIS_PULL_AFTER)) {
+            case 0: {
+                final int end = containerStart + (containerEnd - containerStart - size) / 2 + size;
+                return clip ? Math.min(end, containerEnd) : end;
+            }
+            case LayoutGravity.AXIS_PULL_BEFORE: {
+                final int end = containerStart + size;
+                return clip ? Math.min(end, containerEnd) : end;
+            }
+            default:
+                // end gravity and fill
+                return containerEnd;
+        }
+    }
+
+    public static int findSize(int modeSize, int controlMaxSize, int contentSize) {
+        int realControlSize;
+        switch (modeSize) {
+            case CommonLogic.MODE_UNSPECIFIED:
+                realControlSize = contentSize;
+                break;
+            case CommonLogic.MODE_AT_MOST:
+                realControlSize = Math.min(contentSize, controlMaxSize);
+                break;
+            case CommonLogic.MODE_EXACTLY:
+                realControlSize = controlMaxSize;
+                break;
+            default:
+                realControlSize = contentSize;
+                break;
+        }
+        return realControlSize;
+    }
+
+    /**
+     * Number of items in every line when all items have the same length (including spacing).
+     * A line has at least one item even if it does not fit.
+     */
+    public static int getUniformItemsPerLine(ConfigDefinition config, int itemLength) {
+        if (itemLength <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(1, config.getMaxLength() / itemLength);
+    }
+
+    /**
+     * @param maxLines maximal number of lines, 0 for no limit
+     */
+    public static int getUniformLineCount(int itemCount, int itemsPerLine, int maxLines) {
+        final int lineCount = itemCount / itemsPerLine + (itemCount % itemsPerLine == 0 ? 0 : 1);
+        return maxLines > 0 ? Math.min(lineCount, maxLines) : lineCount;
+    }
+
+    /**
+     * Stretches a full line item to the line length, unless the length is not limited.
+     */
+    public static void applyFullLineLength(ViewDefinition child, ConfigDefinition config) {
+        if (!child.isFullLine() || config.getLengthMode() == CommonLogic.MODE_UNSPECIFIED) {
+            return;
+        }
+        if (config.getOrientation() == CommonLogic.HORIZONTAL) {
+            child.setWidth(Math.max(child.getWidth(), config.getMaxLength() - child.getLeftMargin() - child.getRightMargin()));
+        } else {
+            child.setHeight(Math.max(child.getHeight(), config.getMaxLength() - child.getTopMargin() - child.getBottomMargin()));
+        }
+    }
+
+    private static float getWeight(ViewDefinition child, ConfigDefinition config) {
+        return child.weightSpecified() ? child.getWeight() : config.getWeightDefault();
+    }
+
+
+    private static int getGravity(ViewDefinition child, ConfigDefinition config) {
+        if (child.getResolvedGravity() == 0) {
+            child.setResolvedGravity(resolveGravity(child.getGravity(), config));
+        }
+        return child.getResolvedGravity();
+    }
+
+    /**
+     * Gravity of an item with the given layout gravity: axes swapped for the orientation and the layout direction,
+     * axes not specified taken from the container gravity or set to top left. The result depends only on the
+     * layout gravity and {@link ConfigDefinition#getGravityVersion()}, so layouts keep it between passes.
+     *
+     * @param gravity layout gravity of the item, {@link LayoutGravity#NO_GRAVITY} for the gravity of the lines
+     */
+    public static int resolveGravity(int gravity, ConfigDefinition config) {
+        int parentGravity = config.getGravity();
+
+        int childGravity;
+        // get childGravity of child view (if exists)
+        if (gravity != LayoutGravity.NO_GRAVITY) {
+            childGravity = gravity;
+        } else {
+            childGravity = parentGravity;
+        }
+
+        childGravity = getGravityFromRelative(childGravity, config);
+        parentGravity = getGravityFromRelative(parentGravity, config);
+
+        // add parent gravity to child gravity if child gravity is not specified
+        if ((childGravity & LayoutGravity.HORIZONTAL_GRAVITY_MASK) == 0) {
+            childGravity |= parentGravity & LayoutGravity.HORIZONTAL_GRAVITY_MASK;
+        }
+        if ((childGravity & LayoutGravity.VERTICAL_GRAVITY_MASK) == 0) {
+            childGravity |= parentGravity & LayoutGravity.VERTICAL_GRAVITY_MASK;
+        }
+
+        // if childGravity is still not specified - set default top - left gravity
+        if ((childGravity & LayoutGravity.HORIZONTAL_GRAVITY_MASK) == 0) {
+            childGravity |= LayoutGravity.LEFT;
+        }
+        if ((childGravity & LayoutGravity.VERTICAL_GRAVITY_MASK) == 0) {
+            childGravity |= LayoutGravity.TOP;
+        }
+
+        return childGravity;
+    }
+
+
+    public static int getGravityFromRelative(int childGravity, ConfigDefinition config) {
+        // swap directions for vertical non relative view
+        // if it is relative, then START is TOP, and we do not need to switch it here.
+        // it will be switched later on onMeasure stage when calculations will be with length and thickness
+        if (config.getOrientation() == CommonLogic.VERTICAL && (childGravity & LayoutGravity.RELATIVE_LAYOUT_DIRECTION) == 0) {
+            int horizontalGravity = childGravity;
+            childGravity = 0;
+            childGravity |= (horizontalGravity & LayoutGravity.HORIZONTAL_GRAVITY_MASK) >> LayoutGravity.AXIS_X_SHIFT << LayoutGravity.AXIS_Y_SHIFT;
+            childGravity |= (horizontalGravity & LayoutGravity.VERTICAL_GRAVITY_MASK) >> LayoutGravity.AXIS_Y_SHIFT << LayoutGravity.AXIS_X_SHIFT;
+        }
+
+        // for relative layout and RTL direction swap left and right gravity
+        if (config.getLayoutDirection() == CommonLogic.LAYOUT_DIRECTION_RTL && (childGravity & LayoutGravity.RELATIVE_LAYOUT_DIRECTION) != 0) {
+            int ltrGravity = childGravity;
+            childGravity = 0;
+            childGravity |= (ltrGravity & LayoutGravity.LEFT) == LayoutGravity.LEFT ? LayoutGravity.RIGHT : 0;
+            childGravity |= (ltrGravity & LayoutGravity.RIGHT) == LayoutGravity.RIGHT ? LayoutGravity.LEFT : 0;
+        }
+
+        return childGravity;
+    }
+
+    /**
+     * @param pool lines are taken from the pool of the layout
+     */
+    public static void fillLines(List<ViewDefinition> views, List<LineDefinition> lines, ConfigDefinition config, DefinitionPool pool) {
+        final int firstLine = lines.size();
+        LineDefinition currentLine = pool.obtainLine();
+        lines.add(currentLine);
+        final int count = views.size();
+        for (int i = 0; i < count; i++) {
+            final ViewDefinition child = views.get(i);
+            applyFullLineLength(child, config);
+
+            boolean newLine = child.isNewLine() || (config.isCheckCanFit() && !currentLine.canFit(child))
+                    || (!currentLine.getViews().isEmpty() && (child.isFullLine() || currentLine.isFullLine()));
+
+            if (newLine && config.getMaxLines() > 0 && lines.size() == config.getMaxLines())
+                break;
+
+            if (newLine) {
+                currentLine = pool.obtainLine();
+                lines.add(currentLine);
+            }
+
+            currentLine.addView(child);
+        }
+
+        // right to left order is made by one reverse instead of inserting at the front
+        if (config.getLayoutDirection() == CommonLogic.LAYOUT_DIRECTION_RTL) {
+            if (config.getOrientation() == CommonLogic.HORIZONTAL) {
+                final int lineCount = lines.size();
+                for (int i = firstLine; i < lineCount; i++) {
+                    lines.get(i).reverseViews();
+                }
+            } else {
+                reverse(lines, firstLine, lines.size());
+            }
+        }
+    }
+
+    /**
+     * Reverses the elements in [from, to) in place.
+     */
+    static <T> void reverse(List<T> list, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            list.set(i, list.set(j, list.get(i)));
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package org.apmem.tools.layouts.logic;
 
-import android.view.Gravity;
-import android.view.View;
-
 public class ConfigDefinition {
     private int orientation;
     private boolean debugDraw;
@@ -15,15 +12,20 @@ public class ConfigDefinition {
     private int widthMode;
     private int heightMode;
     private int maxLines;
+    private boolean uniformItemSize;
+    private boolean uniformLineThickness;
+    private int gravityVersion;
+    private int resolvedGravity;
 
     public ConfigDefinition() {
         this.setOrientation(CommonLogic.HORIZONTAL);
         this.setDebugDraw(false);
         this.setWeightDefault(0.0f);
-        this.setGravity(Gravity.NO_GRAVITY);
-        this.setLayoutDirection(View.LAYOUT_DIRECTION_LTR);
+        this.setGravity(LayoutGravity.NO_GRAVITY);
+        this.setLayoutDirection(CommonLogic.LAYOUT_DIRECTION_LTR);
         this.setCheckCanFit(true);
         this.setMaxLines(0);
+        this.gravityChanged();
     }
 
     public int getOrientation() {
@@ -31,11 +33,15 @@ public class ConfigDefinition {
     }
 
     public void setOrientation(int orientation) {
+        final int previous = this.orientation;
         if (orientation == CommonLogic.VERTICAL) {
             this.orientation = orientation;
         } else {
             this.orientation = CommonLogic.HORIZONTAL;
         }
+        if (previous != this.orientation) {
+            this.gravityChanged();
+        }
     }
 
     public boolean isDebugDraw() {
@@ -59,7 +65,30 @@ public class ConfigDefinition {
     }
 
     public void setGravity(int gravity) {
-        this.gravity = gravity;
+        if (this.gravity != gravity) {
+            this.gravity = gravity;
+            this.gravityChanged();
+        }
+    }
+
+    /**
+     * Changes whenever orientation, layout direction or gravity change, resolved gravities of items
+     * are computed again then.
+     */
+    public int getGravityVersion() {
+        return this.gravityVersion;
+    }
+
+    /**
+     * @return gravity of the lines and of items without layout gravity, see {@link CommonLogic#resolveGravity(int, ConfigDefinition)}
+     */
+    public int getResolvedGravity() {
+        return this.resolvedGravity;
+    }
+
+    private void gravityChanged() {
+        this.gravityVersion++;
+        this.resolvedGravity = CommonLogic.resolveGravity(LayoutGravity.NO_GRAVITY, this);
     }
 
     public int getLayoutDirection() {
@@ -67,10 +96,14 @@ public class ConfigDefinition {
     }
 
     public void setLayoutDirection(int layoutDirection) {
-        if (layoutDirection == View.LAYOUT_DIRECTION_RTL) {
+        final int previous = this.layoutDirection;
+        if (layoutDirection == CommonLogic.LAYOUT_DIRECTION_RTL) {
             this.layoutDirection = layoutDirection;
         } else {
-            this.layoutDirection = View.LAYOUT_DIRECTION_LTR;
+            this.layoutDirection = CommonLogic.LAYOUT_DIRECTION_LTR;
+        }
+        if (previous != this.layoutDirection) {
+            this.gravityChanged();
         }
     }
 
@@ -121,4 +154,26 @@ public class ConfigDefinition {
     public void setMaxLines(int maxLines) {
         this.maxLines = maxLines;
     }
+
+    public boolean isUniformItemSize() {
+        return this.uniformItemSize;
+    }
+
+    /**
+     * All items have the size of the first one, so lines are computed without measuring the other items.
+     */
+    public void setUniformItemSize(boolean uniformItemSize) {
+        this.uniformItemSize = uniformItemSize;
+    }
+
+    public boolean isUniformLineThickness() {
+        return this.uniformLineThickness;
+    }
+
+    /**
+     * All lines have the thickness of the first one, only the line breaks depend on the item lengths.
+     */
+    public void setUniformLineThickness(boolean uniformLineThickness) {
+        this.uniformLineThickness = uniformLineThickness;
+    }
 }
@@ -0,0 +1,69 @@
+package org.apmem.tools.layouts.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * View and line definitions owned by one layout. Released definitions are handed out again,
+ * so the pool grows to the largest number in use at once and later passes do not allocate.
+ * A released definition must not be used any more.
+ */
+public class DefinitionPool {
+    private final ConfigDefinition config;
+    private final List<ViewDefinition> freeViews = new ArrayList<>();
+    private final List<LineDefinition> freeLines = new ArrayList<>();
+
+    public DefinitionPool(ConfigDefinition config) {
+        this.config = config;
+    }
+
+    public ViewDefinition obtainView(Object child) {
+        final int size = this.freeViews.size();
+        if (size == 0) {
+            return new ViewDefinition(this.config, child);
+        }
+
+        final ViewDefinition view = this.freeViews.remove(size - 1);
+        view.reset(child);
+        return view;
+    }
+
+    public LineDefinition obtainLine() {
+        final int size = this.freeLines.size();
+        if (size == 0) {
+            return new LineDefinition(this.config);
+        }
+        return this.freeLines.remove(size - 1);
+    }
+
+    public void release(ViewDefinition view) {
+        // released definitions do not keep views of removed items
+        view.reset(null);
+        this.freeViews.add(view);
+    }
+
+    /**
+     * Releases the line only, the views in it are released separately.
+     */
+    public void release(LineDefinition line) {
+        line.reset();
+        this.freeLines.add(line);
+    }
+
+    /**
+     * Releases all views and lines and clears both lists.
+     */
+    public void releaseAll(List<ViewDefinition> views, List<LineDefinition> lines) {
+        final int viewCount = views.size();
+        for (int i = 0; i < viewCount; i++) {
+            release(views.get(i));
+        }
+        views.clear();
+
+        final int lineCount = lines.size();
+        for (int i = 0; i < lineCount; i++) {
+            release(lines.get(i));
+        }
+        lines.clear();
+    }
+}
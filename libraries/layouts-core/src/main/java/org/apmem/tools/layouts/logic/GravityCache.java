@@ -0,0 +1,22 @@
+package org.apmem.tools.layouts.logic;
+
+/**
+ * Resolved gravity of one item kept between layout passes. It is computed again only when the layout gravity
+ * of the item or the gravity related config changes, see {@link ConfigDefinition#getGravityVersion()}.
+ */
+public class GravityCache {
+    private ConfigDefinition config;
+    private int version;
+    private int gravity;
+    private int resolvedGravity;
+
+    public int resolve(int gravity, ConfigDefinition config) {
+        if (this.config != config || this.version != config.getGravityVersion() || this.gravity != gravity) {
+            this.config = config;
+            this.version = config.getGravityVersion();
+            this.gravity = gravity;
+            this.resolvedGravity = CommonLogic.resolveGravity(gravity, config);
+        }
+        return this.resolvedGravity;
+    }
+}
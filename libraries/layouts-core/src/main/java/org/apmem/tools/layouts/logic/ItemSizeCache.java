@@ -0,0 +1,254 @@
+package org.apmem.tools.layouts.logic;
+
+import java.util.Arrays;
+
+/**
+ * Measured sizes of items keyed by a long key (stable id or {@link #positionKey(int, int)}).
+ * Width, height, margins and the line flags of every item are kept in one int array,
+ * keys in an open addressing table, so the cache does not create objects per item.
+ * <p/>
+ * With a max size set, adding an item to a full cache evicts one which was not read or written since the clock hand
+ * last passed it, so the items around the laid out ones stay while the ones scrolled far away go.
+ */
+public class ItemSizeCache {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int FIELDS = 7;
+    private static final int WIDTH = 0;
+    private static final int HEIGHT = 1;
+    private static final int LEFT_MARGIN = 2;
+    private static final int TOP_MARGIN = 3;
+    private static final int RIGHT_MARGIN = 4;
+    private static final int BOTTOM_MARGIN = 5;
+    private static final int FLAGS = 6;
+    private static final int FLAG_NEW_LINE = 1;
+    private static final int FLAG_FULL_LINE = 2;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private boolean[] referenced = new boolean[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY * FIELDS];
+    private int size;
+    private int maxSize;
+    private int clockHand;
+
+    /**
+     * Key for adapters without stable ids. Such keys move with positions and have to be removed on structure changes.
+     */
+    public static long positionKey(int viewType, int position) {
+        return ((long) viewType << 32) | (position & 0xffffffffL);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @param maxSize maximal number of items, 0 for no limit. Items over the limit are evicted right away.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        while (this.maxSize > 0 && this.size > this.maxSize) {
+            evict();
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(this.used, false);
+        Arrays.fill(this.referenced, false);
+        this.size = 0;
+    }
+
+    /**
+     * Fills size, margins and line flags of the definition from the cache.
+     *
+     * @return false if there is no item with this key
+     */
+    public boolean get(long key, ViewDefinition definition) {
+        final int slot = findSlot(key);
+        if (!this.used[slot]) {
+            return false;
+        }
+
+        this.referenced[slot] = true;
+        final int offset = slot * FIELDS;
+        definition.setWidth(this.values[offset + WIDTH]);
+        definition.setHeight(this.values[offset + HEIGHT]);
+        definition.setMargins(this.values[offset + LEFT_MARGIN], this.values[offset + TOP_MARGIN], this.values[offset + RIGHT_MARGIN], this.values[offset + BOTTOM_MARGIN]);
+        definition.setNewLine((this.values[offset + FLAGS] & FLAG_NEW_LINE) != 0);
+        definition.setFullLine((this.values[offset + FLAGS] & FLAG_FULL_LINE) != 0);
+        return true;
+    }
+
+    public void put(long key, ViewDefinition definition) {
+        int slot = findSlot(key);
+        if (!this.used[slot]) {
+            if (this.maxSize > 0 && this.size >= this.maxSize) {
+                evict();
+            } else if ((this.size + 1) * 4 > this.keys.length * 3) {
+                resize(this.keys.length * 2);
+            }
+            // eviction and growth move the items
+            slot = findSlot(key);
+            this.used[slot] = true;
+            this.keys[slot] = key;
+            this.size++;
+        }
+        this.referenced[slot] = true;
+
+        final int offset = slot * FIELDS;
+        this.values[offset + WIDTH] = definition.getWidth();
+        this.values[offset + HEIGHT] = definition.getHeight();
+        this.values[offset + LEFT_MARGIN] = definition.getLeftMargin();
+        this.values[offset + TOP_MARGIN] = definition.getTopMargin();
+        this.values[offset + RIGHT_MARGIN] = definition.getRightMargin();
+        this.values[offset + BOTTOM_MARGIN] = definition.getBottomMargin();
+        this.values[offset + FLAGS] = (definition.isNewLine() ? FLAG_NEW_LINE : 0) | (definition.isFullLine() ? FLAG_FULL_LINE : 0);
+    }
+
+    public void remove(long key) {
+        final int slot = findSlot(key);
+        if (this.used[slot]) {
+            removeSlot(slot);
+        }
+    }
+
+    private void removeSlot(int slot) {
+        this.used[slot] = false;
+        this.referenced[slot] = false;
+        this.size--;
+
+        // move following entries of the probe sequence into the hole
+        final int mask = this.keys.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (!this.used[next]) {
+                return;
+            }
+
+            final int home = hash(this.keys[next]) & mask;
+            final boolean stays = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+            if (stays) {
+                continue;
+            }
+
+            this.keys[slot] = this.keys[next];
+            this.used[slot] = true;
+            this.referenced[slot] = this.referenced[next];
+            System.arraycopy(this.values, next * FIELDS, this.values, slot * FIELDS, FIELDS);
+            this.used[next] = false;
+            this.referenced[next] = false;
+            slot = next;
+        }
+    }
+
+    /**
+     * Second chance: the hand clears the referenced flag of the items it passes and removes the first item without it.
+     */
+    private void evict() {
+        final int mask = this.keys.length - 1;
+        while (true) {
+            this.clockHand = (this.clockHand + 1) & mask;
+            if (!this.used[this.clockHand]) {
+                continue;
+            }
+            if (this.referenced[this.clockHand]) {
+                this.referenced[this.clockHand] = false;
+                continue;
+            }
+
+            removeSlot(this.clockHand);
+            return;
+        }
+    }
+
+    /**
+     * Removes all {@link #positionKey(int, int)} entries with position in [fromPosition, toPosition).
+     * The table is changed in place: the entries are dropped, then the remaining ones are placed again in probe order.
+     */
+    public void removePositions(int fromPosition, int toPosition) {
+        final int capacity = this.keys.length;
+        final int sizeBefore = this.size;
+        // the table is never full. Walking from a slot which is empty before the removal, every probe sequence is walked from its start
+        int start = 0;
+        while (this.used[start]) {
+            start++;
+        }
+        for (int i = 0; i < capacity; i++) {
+            final int position = (int) this.keys[i];
+            if (this.used[i] && position >= fromPosition && position < toPosition) {
+                this.used[i] = false;
+                this.referenced[i] = false;
+                this.size--;
+            }
+        }
+        if (this.size == sizeBefore) {
+            return;
+        }
+
+        final int mask = capacity - 1;
+        for (int i = 1; i < capacity; i++) {
+            final int slot = (start + i) & mask;
+            if (!this.used[slot]) {
+                continue;
+            }
+
+            this.used[slot] = false;
+            final int target = findSlot(this.keys[slot]);
+            this.used[target] = true;
+            if (target != slot) {
+                this.keys[target] = this.keys[slot];
+                this.referenced[target] = this.referenced[slot];
+                this.referenced[slot] = false;
+                System.arraycopy(this.values, slot * FIELDS, this.values, target * FIELDS, FIELDS);
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        final long[] oldKeys = this.keys;
+        final boolean[] oldUsed = this.used;
+        final boolean[] oldReferenced = this.referenced;
+        final int[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.used = new boolean[capacity];
+        this.referenced = new boolean[capacity];
+        this.values = new int[capacity * FIELDS];
+        this.size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                insert(oldKeys[i], oldReferenced[i], oldValues, i * FIELDS);
+            }
+        }
+    }
+
+    private void insert(long key, boolean referenced, int[] source, int sourceOffset) {
+        final int slot = findSlot(key);
+        this.used[slot] = true;
+        this.referenced[slot] = referenced;
+        this.keys[slot] = key;
+        System.arraycopy(source, sourceOffset, this.values, slot * FIELDS, FIELDS);
+        this.size++;
+    }
+
+    /**
+     * @return slot with the key or the empty slot where it should be placed
+     */
+    private int findSlot(long key) {
+        final int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.used[slot] && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
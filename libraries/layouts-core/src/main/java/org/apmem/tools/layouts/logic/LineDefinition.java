@@ -0,0 +1,120 @@
+package org.apmem.tools.layouts.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LineDefinition {
+    private final List<ViewDefinition> views = new ArrayList<>();
+    private final ConfigDefinition config;
+    private int lineLength;
+    private int lineThickness;
+    private int lineStartThickness;
+    private int lineStartLength;
+    private boolean fullLine;
+
+    public LineDefinition(ConfigDefinition config) {
+        this.config = config;
+        this.lineStartThickness = 0;
+        this.lineStartLength = 0;
+    }
+
+    /**
+     * Empties a released line, the list of views is kept, see {@link DefinitionPool}.
+     */
+    void reset() {
+        this.views.clear();
+        this.lineLength = 0;
+        this.lineThickness = 0;
+        this.lineStartThickness = 0;
+        this.lineStartLength = 0;
+        this.fullLine = false;
+    }
+
+    public void addView(ViewDefinition child) {
+        this.addView(this.views.size(), child);
+    }
+
+    public void addView(int i, ViewDefinition child) {
+        this.views.add(i, child);
+        this.fullLine |= child.isFullLine();
+
+        if (this.config.getOrientation() == CommonLogic.HORIZONTAL) {
+            this.lineLength += child.getWidth() + child.getLeftMargin() + child.getRightMargin();
+            this.lineThickness = Math.max(this.lineThickness, child.getHeight() + child.getTopMargin() + child.getBottomMargin());
+        } else {
+            this.lineLength += child.getHeight() + child.getTopMargin() + child.getBottomMargin();
+            this.lineThickness = Math.max(this.lineThickness, child.getWidth() + child.getLeftMargin() + child.getRightMargin());
+        }
+    }
+
+    /**
+     * Reverses the order of the views, right to left lines are filled forward and reversed once.
+     */
+    public void reverseViews() {
+        CommonLogic.reverse(this.views, 0, this.views.size());
+    }
+
+    public boolean canFit(ViewDefinition child) {
+        if (this.fullLine || child.isFullLine()) {
+            return this.views.isEmpty();
+        }
+        final int childLength = config.getOrientation() == CommonLogic.HORIZONTAL
+                ? child.getWidth() + child.getLeftMargin() + child.getRightMargin()
+                : child.getHeight() + child.getTopMargin() + child.getBottomMargin();
+        return lineLength + childLength <= config.getMaxLength();
+    }
+
+    public int getLineStartThickness() {
+        return lineStartThickness;
+    }
+
+    public void setLineStartThickness(int lineStartThickness) {
+        this.lineStartThickness = lineStartThickness;
+    }
+
+    public int getLineThickness() {
+        return lineThickness;
+    }
+
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    public int getLineStartLength() {
+        return lineStartLength;
+    }
+
+    public void setLineStartLength(int lineStartLength) {
+        this.lineStartLength = lineStartLength;
+    }
+
+    /**
+     * @return line holds a full line item
+     */
+    public boolean isFullLine() {
+        return fullLine;
+    }
+
+    public List<ViewDefinition> getViews() {
+        return views;
+    }
+
+    ConfigDefinition getConfig() {
+        return config;
+    }
+
+    public void setThickness(int thickness) {
+        this.lineThickness = thickness;
+    }
+
+    public void setLength(int length) {
+        this.lineLength = length;
+    }
+
+    public int getX() {
+        return this.config.getOrientation() == CommonLogic.HORIZONTAL ? this.lineStartLength : this.lineStartThickness;
+    }
+    public int getY() {
+        return this.config.getOrientation() == CommonLogic.HORIZONTAL ? this.lineStartThickness : this.lineStartLength;
+    }
+}
\ No newline at end of file
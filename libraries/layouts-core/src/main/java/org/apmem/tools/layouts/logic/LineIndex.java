@@ -0,0 +1,547 @@
+package org.apmem.tools.layouts.logic;
+
+import java.util.Arrays;
+
+/**
+ * Compact index of the lines built so far: start position, start thickness and thickness of every line
+ * kept in primitive arrays. Lines cover adapter positions [0, getItemCount()) without gaps.
+ * <p/>
+ * After {@link #invalidate(int, int, int)} lines following the changed items are kept aside. Line breaking is greedy,
+ * so as soon as a newly added line ends where one of those lines starts, the rest of them is attached back
+ * without measuring their items again.
+ * <p/>
+ * When all items have the same size the lines are not stored at all, see {@link #setUniformLines(int, int, int, int)}.
+ * When only the lines have the same thickness their offsets are computed, see {@link #setUniformLineThickness(boolean)}.
+ * <p/>
+ * Lines built from estimated item sizes are marked, {@link #replaceLine(int, int[], int[], boolean[], int)} puts the measured lines
+ * in their place later without moving any other line break.
+ * <p/>
+ * Start positions of full line items are kept sorted, so the full line item before any position is found by binary search.
+ */
+public class LineIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] lineStartPositions = new int[INITIAL_CAPACITY];
+    private int[] lineStartThicknesses = new int[INITIAL_CAPACITY];
+    private int[] lineThicknesses = new int[INITIAL_CAPACITY];
+    private boolean[] lineEstimated = new boolean[INITIAL_CAPACITY];
+    private int lineCount;
+    private int itemCount;
+    private int estimatedLineCount;
+    // no line before it is estimated
+    private int firstEstimatedLine;
+    private int[] fullLinePositions = new int[INITIAL_CAPACITY];
+    private int fullLineCount;
+
+    private boolean uniform;
+    private int uniformItemsPerLine;
+    private boolean uniformThickness;
+    private int uniformLineThickness;
+
+    private int[] tailStartPositions = new int[0];
+    private int[] tailEndPositions = new int[0];
+    private int[] tailThicknesses = new int[0];
+    private boolean[] tailFullLine = new boolean[0];
+    private int tailFirst;
+    private int tailCount;
+
+    public int getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * @return number of positions covered by the indexed lines
+     */
+    public int getItemCount() {
+        return this.itemCount;
+    }
+
+    public boolean isEmpty() {
+        return this.lineCount == 0;
+    }
+
+    public void clear() {
+        this.uniform = false;
+        this.lineCount = 0;
+        this.itemCount = 0;
+        this.estimatedLineCount = 0;
+        this.firstEstimatedLine = 0;
+        this.fullLineCount = 0;
+        this.tailFirst = 0;
+        this.tailCount = 0;
+    }
+
+    /**
+     * Keeps only the first lineCount lines, lines kept aside by {@link #invalidate(int, int, int)} are dropped.
+     */
+    public void truncate(int lineCount) {
+        this.tailFirst = 0;
+        this.tailCount = 0;
+        if (lineCount >= this.lineCount) {
+            return;
+        }
+
+        dropLinesFrom(Math.max(0, lineCount));
+    }
+
+    private void dropLinesFrom(int lineCount) {
+        if (!this.uniform) {
+            for (int i = lineCount; i < this.lineCount; i++) {
+                if (this.lineEstimated[i]) {
+                    this.estimatedLineCount--;
+                }
+            }
+        }
+        this.lineCount = lineCount;
+        this.firstEstimatedLine = Math.min(this.firstEstimatedLine, lineCount);
+        this.itemCount = lineCount == 0 ? 0 : this.getLineStartPosition(lineCount);
+        this.fullLineCount = findFullLineIndex(this.itemCount - 1) + 1;
+    }
+
+    /**
+     * Switches to lines computed by arithmetic: every line has itemsPerLine items and the same thickness.
+     * Positions, offsets and lookups cost O(1) and nothing is stored per line.
+     * Any change of the lines except {@link #truncate(int)} clears the index, it has to be set again.
+     *
+     * @param maxLines maximal number of lines, 0 for no limit
+     */
+    public void setUniformLines(int itemsPerLine, int lineThickness, int itemCount, int maxLines) {
+        this.clear();
+        this.uniform = true;
+        this.uniformItemsPerLine = Math.max(1, itemsPerLine);
+        this.uniformLineThickness = lineThickness;
+        this.lineCount = CommonLogic.getUniformLineCount(itemCount, this.uniformItemsPerLine, maxLines);
+        this.itemCount = Math.min(itemCount, this.getLineStartPosition(this.lineCount));
+    }
+
+    public boolean isUniform() {
+        return this.uniform;
+    }
+
+    /**
+     * All lines have the thickness of the first added one, line offsets and offset lookups are computed by multiplication.
+     * Only the line breaks are stored. The mode stays after {@link #clear()}, switching it clears the index.
+     */
+    public void setUniformLineThickness(boolean uniformThickness) {
+        if (this.uniformThickness != uniformThickness) {
+            this.clear();
+            this.uniformThickness = uniformThickness;
+        }
+    }
+
+    public boolean isUniformLineThickness() {
+        return this.uniformThickness;
+    }
+
+    private boolean isThicknessComputed() {
+        return this.uniform || this.uniformThickness;
+    }
+
+    /**
+     * Drops the lines which could change after items in [changedStart, firstUnchanged) were changed.
+     * A line depends on its items and on the item following it, so only lines ending before changedStart
+     * stay indexed. Lines starting at or after firstUnchanged are kept aside with positions moved by positionShift
+     * and attached back once a new line ends at the start of one of them. Estimated lines are not kept aside.
+     *
+     * @param changedStart   first changed position
+     * @param firstUnchanged first position (before the change) of the items which were not changed
+     * @param positionShift  difference between the new and the old positions of the unchanged items
+     */
+    public void invalidate(int changedStart, int firstUnchanged, int positionShift) {
+        if (this.uniform) {
+            this.clear();
+            return;
+        }
+
+        int keepLines;
+        if (changedStart <= 0) {
+            keepLines = 0;
+        } else if (changedStart > this.itemCount) {
+            keepLines = this.lineCount;
+        } else {
+            keepLines = findLast(this.lineStartPositions, changedStart - 1);
+        }
+
+        // lines starting after the changed items, indexed ones go in front of the ones already kept aside
+        int indexedCount = 0;
+        for (int i = keepLines; i < this.lineCount; i++) {
+            if (this.lineStartPositions[i] >= firstUnchanged && !this.lineEstimated[i]) {
+                indexedCount++;
+            }
+        }
+
+        final int keptCount = this.tailCount - this.tailFirst;
+        ensureTailCapacity(indexedCount + keptCount);
+        System.arraycopy(this.tailStartPositions, this.tailFirst, this.tailStartPositions, indexedCount, keptCount);
+        System.arraycopy(this.tailEndPositions, this.tailFirst, this.tailEndPositions, indexedCount, keptCount);
+        System.arraycopy(this.tailThicknesses, this.tailFirst, this.tailThicknesses, indexedCount, keptCount);
+        System.arraycopy(this.tailFullLine, this.tailFirst, this.tailFullLine, indexedCount, keptCount);
+
+        int count = indexedCount;
+        for (int i = indexedCount; i < indexedCount + keptCount; i++) {
+            if (this.tailEndPositions[i] < changedStart) {
+                setTail(count++, this.tailStartPositions[i], this.tailEndPositions[i], this.tailThicknesses[i], this.tailFullLine[i]);
+            } else if (this.tailStartPositions[i] >= firstUnchanged) {
+                setTail(count++, this.tailStartPositions[i] + positionShift, this.tailEndPositions[i] + positionShift, this.tailThicknesses[i], this.tailFullLine[i]);
+            }
+        }
+
+        int indexed = 0;
+        for (int i = keepLines; i < this.lineCount; i++) {
+            if (this.lineStartPositions[i] >= firstUnchanged && !this.lineEstimated[i]) {
+                setTail(indexed++, this.lineStartPositions[i] + positionShift, this.lineStartPositions[i + 1] + positionShift, this.getLineThickness(i), this.isFullLine(i));
+            }
+        }
+        this.tailFirst = 0;
+        this.tailCount = count;
+
+        dropLinesFrom(keepLines);
+    }
+
+    /**
+     * Appends the line which starts right after the last indexed one.
+     *
+     * @param endPosition position after the last item of the line
+     * @param thickness   line thickness
+     */
+    public void addLine(int endPosition, int thickness) {
+        addLine(endPosition, thickness, false, false);
+    }
+
+    /**
+     * @param estimated line is built from estimated item sizes and has to be replaced by measured lines later
+     * @param fullLine  line is a single full line item
+     */
+    public void addLine(int endPosition, int thickness, boolean estimated, boolean fullLine) {
+        if (this.uniform) {
+            this.clear();
+        }
+        appendLine(endPosition, thickness, estimated, fullLine);
+
+        while (this.tailFirst < this.tailCount && this.tailStartPositions[this.tailFirst] < this.itemCount) {
+            this.tailFirst++;
+        }
+        while (this.tailFirst < this.tailCount && this.tailStartPositions[this.tailFirst] == this.itemCount) {
+            appendLine(this.tailEndPositions[this.tailFirst], this.tailThicknesses[this.tailFirst], false, this.tailFullLine[this.tailFirst]);
+            this.tailFirst++;
+        }
+    }
+
+    private void appendLine(int endPosition, int thickness, boolean estimated, boolean fullLine) {
+        ensureCapacity(this.lineCount + 2);
+        this.lineStartPositions[this.lineCount] = this.itemCount;
+        this.lineEstimated[this.lineCount] = estimated;
+        if (estimated) {
+            this.estimatedLineCount++;
+        }
+        if (fullLine) {
+            insertFullLinePosition(this.fullLineCount, this.itemCount);
+        }
+        if (this.uniformThickness) {
+            if (this.lineCount == 0) {
+                this.uniformLineThickness = thickness;
+            }
+        } else {
+            this.lineStartThicknesses[this.lineCount] = this.getContentThickness();
+            this.lineThicknesses[this.lineCount] = thickness;
+        }
+        this.lineCount++;
+        this.itemCount = endPosition;
+        // start of the next line is the end of this one, it keeps getLineEndPosition branch free
+        this.lineStartPositions[this.lineCount] = endPosition;
+    }
+
+    /**
+     * @return end positions of the indexed lines, with {@link #getLineThicknesses()} it is enough to build the index again.
+     * Uniform lines are not stored, they give an empty array.
+     */
+    public int[] getLineEndPositions() {
+        if (this.uniform) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(this.lineStartPositions, 1, this.lineCount + 1);
+    }
+
+    public int[] getLineThicknesses() {
+        if (this.uniform) {
+            return new int[0];
+        }
+        if (this.uniformThickness) {
+            final int[] thicknesses = new int[this.lineCount];
+            Arrays.fill(thicknesses, this.uniformLineThickness);
+            return thicknesses;
+        }
+        return Arrays.copyOf(this.lineThicknesses, this.lineCount);
+    }
+
+    /**
+     * @return start positions of the full line items, sorted
+     */
+    public int[] getFullLinePositions() {
+        return Arrays.copyOf(this.fullLinePositions, this.fullLineCount);
+    }
+
+    /**
+     * Replaces the index by the lines returned by {@link #getLineEndPositions()}, {@link #getLineThicknesses()}
+     * and {@link #getFullLinePositions()}.
+     */
+    public void setLines(int[] endPositions, int[] thicknesses, int[] fullLinePositions) {
+        this.clear();
+        ensureCapacity(endPositions.length + 1);
+        for (int i = 0; i < endPositions.length; i++) {
+            appendLine(endPositions[i], thicknesses[i], false, false);
+        }
+        for (int position : fullLinePositions) {
+            if (position < this.itemCount) {
+                insertFullLinePosition(this.fullLineCount, position);
+            }
+        }
+    }
+
+    public boolean isFullLine(int line) {
+        if (this.uniform) {
+            return false;
+        }
+        final int start = this.lineStartPositions[line];
+        return this.findFullLinePosition(start) == start;
+    }
+
+    /**
+     * @return start position of the last full line item at or before the position, -1 if there is none
+     */
+    public int findFullLinePosition(int position) {
+        final int index = findFullLineIndex(position);
+        return index < 0 ? -1 : this.fullLinePositions[index];
+    }
+
+    /**
+     * @return start position of the first full line item after the position, -1 if there is none indexed
+     */
+    public int findNextFullLinePosition(int position) {
+        final int index = findFullLineIndex(position) + 1;
+        return index < this.fullLineCount ? this.fullLinePositions[index] : -1;
+    }
+
+    public boolean isLineEstimated(int line) {
+        return !this.uniform && this.lineEstimated[line];
+    }
+
+    public int getEstimatedLineCount() {
+        return this.estimatedLineCount;
+    }
+
+    /**
+     * The first estimated line is tracked as the lines are replaced, so refining the lines one after another
+     * costs O(1) per line instead of a scan over the index.
+     *
+     * @return first estimated line, -1 if there are none
+     */
+    public int findFirstEstimatedLine() {
+        if (this.estimatedLineCount == 0) {
+            return -1;
+        }
+
+        while (!this.lineEstimated[this.firstEstimatedLine]) {
+            this.firstEstimatedLine++;
+        }
+        return this.firstEstimatedLine;
+    }
+
+    /**
+     * Replaces the line by count measured lines covering the same positions. Following lines keep their positions,
+     * their start thicknesses move by the thickness difference.
+     *
+     * @param endPositions end positions of the new lines, the last one is the end of the replaced line
+     * @param thicknesses  thicknesses of the new lines
+     * @param fullLines    which of the new lines are full line items
+     */
+    public void replaceLine(int line, int[] endPositions, int[] thicknesses, boolean[] fullLines, int count) {
+        final int added = count - 1;
+        final int oldEndThickness = this.getLineEndThickness(line);
+        ensureCapacity(this.lineCount + added + 1);
+
+        // following lines with the start position sentinel
+        System.arraycopy(this.lineStartPositions, line + 1, this.lineStartPositions, line + 1 + added, this.lineCount - line);
+        System.arraycopy(this.lineEstimated, line + 1, this.lineEstimated, line + 1 + added, this.lineCount - line - 1);
+        if (!this.uniformThickness) {
+            System.arraycopy(this.lineStartThicknesses, line + 1, this.lineStartThicknesses, line + 1 + added, this.lineCount - line - 1);
+            System.arraycopy(this.lineThicknesses, line + 1, this.lineThicknesses, line + 1 + added, this.lineCount - line - 1);
+        }
+        if (this.lineEstimated[line]) {
+            this.estimatedLineCount--;
+        }
+        if (this.firstEstimatedLine > line) {
+            this.firstEstimatedLine += added;
+        }
+
+        int startThickness = this.getLineStartThickness(line);
+        int fullLineIndex = findFullLineIndex(this.lineStartPositions[line] - 1) + 1;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                this.lineStartPositions[line + i] = endPositions[i - 1];
+            }
+            if (fullLines[i]) {
+                insertFullLinePosition(fullLineIndex++, this.lineStartPositions[line + i]);
+            }
+            this.lineEstimated[line + i] = false;
+            if (!this.uniformThickness) {
+                this.lineStartThicknesses[line + i] = startThickness;
+                this.lineThicknesses[line + i] = thicknesses[i];
+                startThickness += thicknesses[i];
+            }
+        }
+        this.lineCount += added;
+
+        if (!this.uniformThickness) {
+            final int shift = startThickness - oldEndThickness;
+            for (int i = line + count; i < this.lineCount; i++) {
+                this.lineStartThicknesses[i] += shift;
+            }
+        }
+    }
+
+    public int getLineStartPosition(int line) {
+        if (this.uniform) {
+            return (int) Math.min((long) line * this.uniformItemsPerLine, Integer.MAX_VALUE);
+        }
+        return this.lineStartPositions[line];
+    }
+
+    public int getLineEndPosition(int line) {
+        if (this.uniform) {
+            return Math.min(this.itemCount, this.getLineStartPosition(line + 1));
+        }
+        return this.lineStartPositions[line + 1];
+    }
+
+    public int getLineStartThickness(int line) {
+        if (this.isThicknessComputed()) {
+            return line * this.uniformLineThickness;
+        }
+        return this.lineStartThicknesses[line];
+    }
+
+    public int getLineThickness(int line) {
+        if (this.isThicknessComputed()) {
+            return this.uniformLineThickness;
+        }
+        return this.lineThicknesses[line];
+    }
+
+    public int getLineEndThickness(int line) {
+        return this.getLineStartThickness(line) + this.getLineThickness(line);
+    }
+
+    /**
+     * @return thickness of all indexed lines
+     */
+    public int getContentThickness() {
+        return this.lineCount == 0 ? 0 : this.getLineEndThickness(this.lineCount - 1);
+    }
+
+    /**
+     * @return line containing the position or -1 if the position is not indexed yet
+     */
+    public int findLineByPosition(int position) {
+        if (position < 0 || position >= this.itemCount) {
+            return -1;
+        }
+
+        if (this.uniform) {
+            return position / this.uniformItemsPerLine;
+        }
+        return findLast(this.lineStartPositions, position);
+    }
+
+    /**
+     * @return line containing the offset along the thickness axis, offsets outside of the indexed lines
+     * give the first or the last line, -1 if there are no lines
+     */
+    public int findLineByThickness(int thickness) {
+        if (this.lineCount == 0) {
+            return -1;
+        }
+
+        if (this.isThicknessComputed()) {
+            if (thickness <= 0 || this.uniformLineThickness <= 0) {
+                return 0;
+            }
+            return Math.min(thickness / this.uniformLineThickness, this.lineCount - 1);
+        }
+        return Math.max(0, findLast(this.lineStartThicknesses, thickness));
+    }
+
+    /**
+     * @return last line which start value is not greater than the given one
+     */
+    private int findLast(int[] starts, int value) {
+        int low = 0;
+        int high = this.lineCount - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (starts[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * @return index of the last full line position not greater than the given one, -1 if there is none
+     */
+    private int findFullLineIndex(int position) {
+        int low = 0;
+        int high = this.fullLineCount - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            if (this.fullLinePositions[middle] <= position) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private void insertFullLinePosition(int index, int position) {
+        if (this.fullLineCount == this.fullLinePositions.length) {
+            this.fullLinePositions = Arrays.copyOf(this.fullLinePositions, this.fullLineCount * 2);
+        }
+        System.arraycopy(this.fullLinePositions, index, this.fullLinePositions, index + 1, this.fullLineCount - index);
+        this.fullLinePositions[index] = position;
+        this.fullLineCount++;
+    }
+
+    private void setTail(int i, int startPosition, int endPosition, int thickness, boolean fullLine) {
+        this.tailStartPositions[i] = startPosition;
+        this.tailEndPositions[i] = endPosition;
+        this.tailThicknesses[i] = thickness;
+        this.tailFullLine[i] = fullLine;
+    }
+
+    private void ensureTailCapacity(int capacity) {
+        if (capacity <= this.tailStartPositions.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, this.tailStartPositions.length * 2);
+        this.tailStartPositions = Arrays.copyOf(this.tailStartPositions, newCapacity);
+        this.tailEndPositions = Arrays.copyOf(this.tailEndPositions, newCapacity);
+        this.tailThicknesses = Arrays.copyOf(this.tailThicknesses, newCapacity);
+        this.tailFullLine = Arrays.copyOf(this.tailFullLine, newCapacity);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.lineStartPositions.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, this.lineStartPositions.length * 2);
+        this.lineStartPositions = Arrays.copyOf(this.lineStartPositions, newCapacity);
+        this.lineStartThicknesses = Arrays.copyOf(this.lineStartThicknesses, newCapacity);
+        this.lineThicknesses = Arrays.copyOf(this.lineThicknesses, newCapacity);
+        this.lineEstimated = Arrays.copyOf(this.lineEstimated, newCapacity);
+    }
+}
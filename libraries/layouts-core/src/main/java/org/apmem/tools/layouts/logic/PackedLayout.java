@@ -0,0 +1,388 @@
+package org.apmem.tools.layouts.logic;
+
+import java.util.Arrays;
+
+/**
+ * Items and lines of one layout pass kept in parallel primitive arrays instead of {@link ViewDefinition} and
+ * {@link LineDefinition} objects. Sizes, margins, flags, weights and gravities of item i are at index i of the item
+ * arrays, a line is the range [getLineStartItem(line), getLineEndItem(line)) of items.
+ * <p/>
+ * The passes give the same result as {@link CommonLogic#fillLines}, {@link CommonLogic#calculateLinesAndChildPosition}
+ * and {@link CommonLogic#applyGravityToLines}. Items are not moved: right to left lines are walked backwards and
+ * right to left vertical lines are reversed as records.
+ */
+public class PackedLayout {
+    public static final int FLAG_NEW_LINE = 1;
+    public static final int FLAG_FULL_LINE = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ConfigDefinition config;
+
+    private int[] widths = new int[INITIAL_CAPACITY];
+    private int[] heights = new int[INITIAL_CAPACITY];
+    private int[] leftMargins = new int[INITIAL_CAPACITY];
+    private int[] topMargins = new int[INITIAL_CAPACITY];
+    private int[] rightMargins = new int[INITIAL_CAPACITY];
+    private int[] bottomMargins = new int[INITIAL_CAPACITY];
+    private int[] flags = new int[INITIAL_CAPACITY];
+    private int[] gravities = new int[INITIAL_CAPACITY];
+    private float[] weights = new float[INITIAL_CAPACITY];
+    private int[] startLengths = new int[INITIAL_CAPACITY];
+    private int[] startThicknesses = new int[INITIAL_CAPACITY];
+    private int itemCount;
+    private int laidOutItemCount;
+
+    private int[] lineStartItems = new int[INITIAL_CAPACITY];
+    private int[] lineEndItems = new int[INITIAL_CAPACITY];
+    private int[] lineLengths = new int[INITIAL_CAPACITY];
+    private int[] lineThicknesses = new int[INITIAL_CAPACITY];
+    private int[] lineStartLengths = new int[INITIAL_CAPACITY];
+    private int[] lineStartThicknesses = new int[INITIAL_CAPACITY];
+    private int lineCount;
+
+    private boolean horizontal;
+    private boolean reversed;
+
+    public PackedLayout(ConfigDefinition config) {
+        this.config = config;
+    }
+
+    public void clear() {
+        this.itemCount = 0;
+        this.laidOutItemCount = 0;
+        this.lineCount = 0;
+    }
+
+    /**
+     * @param weight  weight of the item, negative for the default weight of the config
+     * @param gravity gravity resolved by {@link CommonLogic#resolveGravity(int, ConfigDefinition)}, 0 for the gravity of the lines
+     * @param flags   {@link #FLAG_NEW_LINE} and {@link #FLAG_FULL_LINE}
+     * @return index of the item
+     */
+    public int addItem(int width, int height, int leftMargin, int topMargin, int rightMargin, int bottomMargin,
+                       float weight, int gravity, int flags) {
+        final int i = this.itemCount;
+        ensureItemCapacity(i + 1);
+        this.widths[i] = width;
+        this.heights[i] = height;
+        this.leftMargins[i] = leftMargin;
+        this.topMargins[i] = topMargin;
+        this.rightMargins[i] = rightMargin;
+        this.bottomMargins[i] = bottomMargin;
+        this.weights[i] = weight;
+        this.gravities[i] = gravity;
+        this.flags[i] = flags;
+        this.itemCount++;
+        return i;
+    }
+
+    public int getItemCount() {
+        return this.itemCount;
+    }
+
+    /**
+     * @return number of items placed into lines, items after them do not fit into the maximal number of lines
+     */
+    public int getLaidOutItemCount() {
+        return this.laidOutItemCount;
+    }
+
+    public int getLineCount() {
+        return this.lineCount;
+    }
+
+    public int getLineStartItem(int line) {
+        return this.lineStartItems[line];
+    }
+
+    public int getLineEndItem(int line) {
+        return this.lineEndItems[line];
+    }
+
+    public int getLineLength(int line) {
+        return this.lineLengths[line];
+    }
+
+    public int getLineThickness(int line) {
+        return this.lineThicknesses[line];
+    }
+
+    public int getWidth(int item) {
+        return this.widths[item];
+    }
+
+    public int getHeight(int item) {
+        return this.heights[item];
+    }
+
+    /**
+     * @return left of the item including its left margin, valid after {@link #applyGravity(int, int)}
+     */
+    public int getLeft(int item) {
+        return this.horizontal ? this.startLengths[item] : this.startThicknesses[item];
+    }
+
+    /**
+     * @return top of the item including its top margin, valid after {@link #applyGravity(int, int)}
+     */
+    public int getTop(int item) {
+        return this.horizontal ? this.startThicknesses[item] : this.startLengths[item];
+    }
+
+    /**
+     * Breaks the items into lines and places them one after another, see {@link CommonLogic#fillLines}
+     * and {@link CommonLogic#calculateLinesAndChildPosition}. There is always at least one line.
+     */
+    public void fillLines() {
+        this.horizontal = this.config.getOrientation() == CommonLogic.HORIZONTAL;
+        final boolean rtl = this.config.getLayoutDirection() == CommonLogic.LAYOUT_DIRECTION_RTL;
+        this.reversed = rtl && this.horizontal;
+
+        // axes are picked once, the loops below do not depend on the orientation
+        final int[] lengths = this.horizontal ? this.widths : this.heights;
+        final int[] thicknesses = this.horizontal ? this.heights : this.widths;
+        final int[] lengthStartMargins = this.horizontal ? this.leftMargins : this.topMargins;
+        final int[] lengthEndMargins = this.horizontal ? this.rightMargins : this.bottomMargins;
+        final int[] thicknessStartMargins = this.horizontal ? this.topMargins : this.leftMargins;
+        final int[] thicknessEndMargins = this.horizontal ? this.bottomMargins : this.rightMargins;
+
+        final boolean checkCanFit = this.config.isCheckCanFit();
+        final boolean stretchFullLines = this.config.getLengthMode() != CommonLogic.MODE_UNSPECIFIED;
+        final int maxLength = this.config.getMaxLength();
+        final int maxLines = this.config.getMaxLines();
+
+        this.lineCount = 0;
+        int lineStart = 0;
+        int lineLength = 0;
+        int lineThickness = 0;
+        boolean lineFullLine = false;
+        int i = 0;
+        for (; i < this.itemCount; i++) {
+            final int spacingLength = lengthStartMargins[i] + lengthEndMargins[i];
+            final boolean fullLine = (this.flags[i] & FLAG_FULL_LINE) != 0;
+            if (fullLine && stretchFullLines) {
+                lengths[i] = Math.max(lengths[i], maxLength - spacingLength);
+            }
+            final int outerLength = lengths[i] + spacingLength;
+            final int outerThickness = thicknesses[i] + thicknessStartMargins[i] + thicknessEndMargins[i];
+
+            final boolean empty = i == lineStart;
+            final boolean canFit = lineFullLine || fullLine ? empty : lineLength + outerLength <= maxLength;
+            final boolean newLine = (this.flags[i] & FLAG_NEW_LINE) != 0 || (checkCanFit && !canFit)
+                    || (!empty && (fullLine || lineFullLine));
+
+            if (newLine && maxLines > 0 && this.lineCount + 1 == maxLines) {
+                break;
+            }
+
+            if (newLine) {
+                addLine(lineStart, i, lineLength, lineThickness);
+                lineStart = i;
+                lineLength = 0;
+                lineThickness = 0;
+                lineFullLine = false;
+            }
+
+            lineLength += outerLength;
+            lineThickness = Math.max(lineThickness, outerThickness);
+            lineFullLine |= fullLine;
+        }
+        addLine(lineStart, i, lineLength, lineThickness);
+        this.laidOutItemCount = i;
+
+        if (rtl && !this.horizontal) {
+            reverseLines();
+        }
+
+        int prevLinesThickness = 0;
+        for (int line = 0; line < this.lineCount; line++) {
+            this.lineStartThicknesses[line] = prevLinesThickness;
+            prevLinesThickness += this.lineThicknesses[line];
+
+            final int start = this.lineStartItems[line];
+            final int end = this.lineEndItems[line];
+            int prevChildLength = 0;
+            for (int k = 0, count = end - start; k < count; k++) {
+                final int item = this.reversed ? end - 1 - k : start + k;
+                this.startLengths[item] = prevChildLength;
+                prevChildLength += lengths[item] + lengthStartMargins[item] + lengthEndMargins[item];
+            }
+        }
+    }
+
+    /**
+     * @return length of the longest line, valid after {@link #fillLines()}
+     */
+    public int getContentLength() {
+        int contentLength = 0;
+        for (int line = 0; line < this.lineCount; line++) {
+            contentLength = Math.max(contentLength, this.lineLengths[line]);
+        }
+        return contentLength;
+    }
+
+    /**
+     * @return thickness of all lines, valid after {@link #fillLines()}
+     */
+    public int getContentThickness() {
+        final int last = this.lineCount - 1;
+        return this.lineStartThicknesses[last] + this.lineThicknesses[last];
+    }
+
+    /**
+     * Places the lines into the control and the items into their lines, see {@link CommonLogic#applyGravityToLines}.
+     * Positions of the items are known after that, see {@link #getLeft(int)}.
+     */
+    public void applyGravity(int realControlLength, int realControlThickness) {
+        final int[] lengths = this.horizontal ? this.widths : this.heights;
+        final int[] thicknesses = this.horizontal ? this.heights : this.widths;
+        final int[] lengthStartMargins = this.horizontal ? this.leftMargins : this.topMargins;
+        final int[] lengthEndMargins = this.horizontal ? this.rightMargins : this.bottomMargins;
+        final int[] thicknessStartMargins = this.horizontal ? this.topMargins : this.leftMargins;
+        final int[] thicknessEndMargins = this.horizontal ? this.bottomMargins : this.rightMargins;
+
+        final int gravity = this.config.getResolvedGravity();
+        final int lengthGravity = gravity >> LayoutGravity.AXIS_X_SHIFT;
+        final int thicknessGravity = gravity >> LayoutGravity.AXIS_Y_SHIFT;
+        final int last = this.lineCount - 1;
+        int remainingLines = this.lineCount;
+        int excessThickness = Math.max(0, realControlThickness - (this.lineThicknesses[last] + this.lineStartThicknesses[last]));
+        int excessOffset = 0;
+        for (int line = 0; line < this.lineCount; line++) {
+            final int extraThickness = excessThickness / remainingLines;
+            excessThickness -= extraThickness;
+            remainingLines--;
+
+            final int lineLength = this.lineLengths[line];
+            final int lineThickness = this.lineThicknesses[line];
+            final int containerStart = excessOffset;
+            final int containerEnd = lineThickness + extraThickness + excessOffset;
+            final int start = CommonLogic.alignStart(lengthGravity, lineLength, 0, realControlLength);
+            final int top = CommonLogic.alignStart(thicknessGravity, lineThickness, containerStart, containerEnd);
+
+            excessOffset += extraThickness;
+            this.lineStartLengths[line] = start;
+            this.lineStartThicknesses[line] += top;
+            this.lineLengths[line] = CommonLogic.alignEnd(lengthGravity, lineLength, 0, realControlLength) - start;
+            this.lineThicknesses[line] = CommonLogic.alignEnd(thicknessGravity, lineThickness, containerStart, containerEnd) - top;
+
+            applyGravityToLine(line, lengths, thicknesses, lengthStartMargins, lengthEndMargins, thicknessStartMargins, thicknessEndMargins);
+        }
+    }
+
+    private void applyGravityToLine(int line, int[] lengths, int[] thicknesses, int[] lengthStartMargins, int[] lengthEndMargins,
+                                    int[] thicknessStartMargins, int[] thicknessEndMargins) {
+        final int start = this.lineStartItems[line];
+        final int end = this.lineEndItems[line];
+        final int count = end - start;
+        if (count <= 0) {
+            return;
+        }
+
+        final float weightDefault = this.config.getWeightDefault();
+        final int lineGravity = this.config.getResolvedGravity();
+        float remainingWeight = 0;
+        for (int item = start; item < end; item++) {
+            remainingWeight += this.weights[item] >= 0 ? this.weights[item] : weightDefault;
+        }
+        final boolean weightBased = remainingWeight > 0;
+
+        final int lineThickness = this.lineThicknesses[line];
+        final int lineStartLength = this.lineStartLengths[line];
+        final int lineStartThickness = this.lineStartThicknesses[line];
+        final int lastItem = this.reversed ? start : end - 1;
+        int excessLengthRemaining = this.lineLengths[line]
+                - (lengths[lastItem] + lengthStartMargins[lastItem] + lengthEndMargins[lastItem] + this.startLengths[lastItem]);
+        int excessOffset = 0;
+        for (int k = 0; k < count; k++) {
+            final int item = this.reversed ? end - 1 - k : start + k;
+            final float weight = this.weights[item] >= 0 ? this.weights[item] : weightDefault;
+            final int gravity = this.gravities[item] != 0 ? this.gravities[item] : lineGravity;
+            int extraLength;
+            if (!weightBased) {
+                extraLength = excessLengthRemaining / (count - k);
+            } else {
+                extraLength = Math.round(excessLengthRemaining * weight / remainingWeight);
+                remainingWeight -= weight;
+            }
+            excessLengthRemaining -= extraLength;
+
+            final int spacingLength = lengthStartMargins[item] + lengthEndMargins[item];
+            final int spacingThickness = thicknessStartMargins[item] + thicknessEndMargins[item];
+            final int childLength = lengths[item] + spacingLength;
+            final int childThickness = thicknesses[item] + spacingThickness;
+
+            final int lengthGravity = gravity >> LayoutGravity.AXIS_X_SHIFT;
+            final int thicknessGravity = gravity >> LayoutGravity.AXIS_Y_SHIFT;
+            final int containerEnd = childLength + extraLength + excessOffset;
+            final int childStart = CommonLogic.alignStart(lengthGravity, childLength, excessOffset, containerEnd);
+            final int childTop = CommonLogic.alignStart(thicknessGravity, childThickness, 0, lineThickness);
+
+            this.startLengths[item] += childStart + lineStartLength;
+            this.startThicknesses[item] = childTop + lineStartThickness;
+            lengths[item] = CommonLogic.alignEnd(lengthGravity, childLength, excessOffset, containerEnd) - childStart - spacingLength;
+            thicknesses[item] = CommonLogic.alignEnd(thicknessGravity, childThickness, 0, lineThickness) - childTop - spacingThickness;
+            excessOffset += extraLength;
+        }
+    }
+
+    private void addLine(int startItem, int endItem, int length, int thickness) {
+        ensureLineCapacity(this.lineCount + 1);
+        this.lineStartItems[this.lineCount] = startItem;
+        this.lineEndItems[this.lineCount] = endItem;
+        this.lineLengths[this.lineCount] = length;
+        this.lineThicknesses[this.lineCount] = thickness;
+        this.lineStartLengths[this.lineCount] = 0;
+        this.lineStartThicknesses[this.lineCount] = 0;
+        this.lineCount++;
+    }
+
+    private void reverseLines() {
+        for (int i = 0, j = this.lineCount - 1; i < j; i++, j--) {
+            swap(this.lineStartItems, i, j);
+            swap(this.lineEndItems, i, j);
+            swap(this.lineLengths, i, j);
+            swap(this.lineThicknesses, i, j);
+        }
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        final int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    private void ensureItemCapacity(int capacity) {
+        if (capacity <= this.widths.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, this.widths.length * 2);
+        this.widths = Arrays.copyOf(this.widths, newCapacity);
+        this.heights = Arrays.copyOf(this.heights, newCapacity);
+        this.leftMargins = Arrays.copyOf(this.leftMargins, newCapacity);
+        this.topMargins = Arrays.copyOf(this.topMargins, newCapacity);
+        this.rightMargins = Arrays.copyOf(this.rightMargins, newCapacity);
+        this.bottomMargins = Arrays.copyOf(this.bottomMargins, newCapacity);
+        this.flags = Arrays.copyOf(this.flags, newCapacity);
+        this.gravities = Arrays.copyOf(this.gravities, newCapacity);
+        this.weights = Arrays.copyOf(this.weights, newCapacity);
+        this.startLengths = Arrays.copyOf(this.startLengths, newCapacity);
+        this.startThicknesses = Arrays.copyOf(this.startThicknesses, newCapacity);
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (capacity <= this.lineStartItems.length) {
+            return;
+        }
+
+        final int newCapacity = Math.max(capacity, this.lineStartItems.length * 2);
+        this.lineStartItems = Arrays.copyOf(this.lineStartItems, newCapacity);
+        this.lineEndItems = Arrays.copyOf(this.lineEndItems, newCapacity);
+        this.lineLengths = Arrays.copyOf(this.lineLengths, newCapacity);
+        this.lineThicknesses = Arrays.copyOf(this.lineThicknesses, newCapacity);
+        this.lineStartLengths = Arrays.copyOf(this.lineStartLengths, newCapacity);
+        this.lineStartThicknesses = Arrays.copyOf(this.lineStartThicknesses, newCapacity);
+    }
+}
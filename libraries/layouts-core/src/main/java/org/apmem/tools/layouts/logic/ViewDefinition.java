@@ -1,15 +1,14 @@
 package org.apmem.tools.layouts.logic;
 
-import android.view.Gravity;
-import android.view.View;
-
 public class ViewDefinition {
     private final ConfigDefinition config;
-    private final View view;
+    private Object view;
     private int inlineStartLength;
     private float weight;
     private int gravity;
+    private int resolvedGravity;
     private boolean newLine;
+    private boolean fullLine;
     private int inlineStartThickness;
     private int width;
     private int height;
@@ -17,12 +16,34 @@ public class ViewDefinition {
     private int topMargin;
     private int rightMargin;
     private int bottomMargin;
+    private boolean estimated;
 
-    public ViewDefinition(ConfigDefinition config, View child) {
+    public ViewDefinition(ConfigDefinition config, Object child) {
         this.config = config;
         this.view = child;
     }
 
+    /**
+     * Gives the definition of a released item to another one, see {@link DefinitionPool}.
+     */
+    void reset(Object child) {
+        this.view = child;
+        this.inlineStartLength = 0;
+        this.weight = 0;
+        this.gravity = 0;
+        this.resolvedGravity = 0;
+        this.newLine = false;
+        this.fullLine = false;
+        this.inlineStartThickness = 0;
+        this.width = 0;
+        this.height = 0;
+        this.leftMargin = 0;
+        this.topMargin = 0;
+        this.rightMargin = 0;
+        this.bottomMargin = 0;
+        this.estimated = false;
+    }
+
     public int getLength() {
         return this.config.getOrientation() == CommonLogic.HORIZONTAL ? width : height;
     }
@@ -76,7 +97,7 @@ public class ViewDefinition {
     }
 
     public boolean gravitySpecified() {
-        return gravity != Gravity.NO_GRAVITY;
+        return gravity != LayoutGravity.NO_GRAVITY;
     }
 
     public int getGravity() {
@@ -85,6 +106,21 @@ public class ViewDefinition {
 
     public void setGravity(int gravity) {
         this.gravity = gravity;
+        this.resolvedGravity = 0;
+    }
+
+    /**
+     * @return gravity resolved by {@link CommonLogic#resolveGravity(int, ConfigDefinition)}, 0 if it is not resolved yet
+     */
+    public int getResolvedGravity() {
+        return resolvedGravity;
+    }
+
+    /**
+     * Layouts keep the resolved gravity of the item between passes and set it here, see {@link GravityCache}.
+     */
+    public void setResolvedGravity(int resolvedGravity) {
+        this.resolvedGravity = resolvedGravity;
     }
 
     public boolean isNewLine() {
@@ -95,7 +131,32 @@ public class ViewDefinition {
         this.newLine = newLine;
     }
 
-    public View getView() {
+    /**
+     * @return item takes a whole line, no other item is placed before or after it in the same line
+     */
+    public boolean isFullLine() {
+        return fullLine;
+    }
+
+    public void setFullLine(boolean fullLine) {
+        this.fullLine = fullLine;
+    }
+
+    /**
+     * @return size is estimated, the item was not measured
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    public void setEstimated(boolean estimated) {
+        this.estimated = estimated;
+    }
+
+    /**
+     * @return view of the item, the layout logic does not look at it
+     */
+    public Object getView() {
         return view;
     }
 
@@ -130,6 +191,22 @@ public class ViewDefinition {
         this.bottomMargin = bottomMargin;
     }
 
+    public int getLeftMargin() {
+        return leftMargin;
+    }
+
+    public int getTopMargin() {
+        return topMargin;
+    }
+
+    public int getRightMargin() {
+        return rightMargin;
+    }
+
+    public int getBottomMargin() {
+        return bottomMargin;
+    }
+
     public int getInlineX() {
         return this.config.getOrientation() == CommonLogic.HORIZONTAL ? this.inlineStartLength : this.inlineStartThickness;
     }
@@ -0,0 +1,350 @@
+package org.apmem.tools.layouts;
+
+import junit.framework.Assert;
+import org.apmem.tools.layouts.logic.CommonLogic;
+import org.apmem.tools.layouts.logic.ConfigDefinition;
+import org.apmem.tools.layouts.logic.DefinitionPool;
+import org.apmem.tools.layouts.logic.GravityCache;
+import org.apmem.tools.layouts.logic.LayoutGravity;
+import org.apmem.tools.layouts.logic.LineDefinition;
+import org.apmem.tools.layouts.logic.ViewDefinition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class CommonLogicTests {
+    @Test
+    public void MaxLinesNotSetAllLinesAddedWhenNotSet() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(20);
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for(int i = 0; i < 9; i++){
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            views.add(view);
+        }
+
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+
+        Assert.assertEquals(5, lines.size());
+        Assert.assertEquals(2, lines.get(0).getViews().size());
+        Assert.assertEquals(2, lines.get(1).getViews().size());
+        Assert.assertEquals(2, lines.get(2).getViews().size());
+        Assert.assertEquals(2, lines.get(3).getViews().size());
+        Assert.assertEquals(1, lines.get(4).getViews().size());
+    }
+
+    @Test
+    public void MaxLinesSetLinesCountEqualToMaxLines() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(20);
+        config.setMaxLines(2);
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for(int i = 0; i < 9; i++){
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            views.add(view);
+        }
+
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals(2, lines.get(0).getViews().size());
+        Assert.assertEquals(2, lines.get(1).getViews().size());
+    }
+
+    @Test
+    public void GravityApplyUseAllAvailableSpaceHorizontally() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(30);
+        config.setMaxHeight(20);
+        config.setGravity(LayoutGravity.FILL);
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            views.add(view);
+        }
+
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+        CommonLogic.calculateLinesAndChildPosition(lines);
+        CommonLogic.applyGravityToLines(lines, 30, 20, config);
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals(10, lines.get(0).getViews().get(0).getWidth());
+        Assert.assertEquals(10, lines.get(0).getViews().get(1).getWidth());
+        Assert.assertEquals(10, lines.get(0).getViews().get(2).getWidth());
+    }
+
+    @Test
+    public void GravityApplyUseAllAvailableSpaceHorizontallyWithLastPixel() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(31);
+        config.setMaxHeight(20);
+        config.setGravity(LayoutGravity.FILL);
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            views.add(view);
+        }
+
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+        CommonLogic.calculateLinesAndChildPosition(lines);
+        CommonLogic.applyGravityToLines(lines, 31, 20, config);
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals(10, lines.get(0).getViews().get(0).getWidth());
+        Assert.assertEquals(10, lines.get(0).getViews().get(1).getWidth());
+        Assert.assertEquals(11, lines.get(0).getViews().get(2).getWidth());
+    }
+
+    @Test
+    public void GravityApplyUseAllAvailableSpaceVertically() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(30);
+        config.setMaxHeight(20);
+        config.setGravity(LayoutGravity.FILL);
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            views.add(view);
+        }
+
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+        CommonLogic.calculateLinesAndChildPosition(lines);
+        CommonLogic.applyGravityToLines(lines, 30, 20, config);
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals(10, lines.get(0).getViews().get(0).getHeight());
+        Assert.assertEquals(10, lines.get(1).getViews().get(0).getHeight());
+    }
+
+    @Test
+    public void GravityApplyUseAllAvailableSpaceVerticallyWithLastPixel() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(30);
+        config.setMaxHeight(21);
+        config.setGravity(LayoutGravity.FILL);
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            views.add(view);
+        }
+
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+        CommonLogic.calculateLinesAndChildPosition(lines);
+        CommonLogic.applyGravityToLines(lines, 30, 21, config);
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals(10, lines.get(0).getViews().get(0).getHeight());
+        Assert.assertEquals(11, lines.get(1).getViews().get(0).getHeight());
+    }
+
+    @Test
+    public void FullLineItemAloneInItsLineAndStretched() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(40);
+        config.setWidthMode(CommonLogic.MODE_EXACTLY);
+        config.setCheckCanFit(true);
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            view.setFullLine(i == 2);
+            views.add(view);
+        }
+
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals(2, lines.get(0).getViews().size());
+        Assert.assertEquals(1, lines.get(1).getViews().size());
+        Assert.assertEquals(40, lines.get(1).getViews().get(0).getWidth());
+        Assert.assertEquals(2, lines.get(2).getViews().size());
+    }
+
+    @Test
+    public void VerticalOrientation_LinesFilledByHeightWithMargins() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(100);
+        config.setMaxHeight(30);
+        config.setOrientation(CommonLogic.VERTICAL);
+        Assert.assertEquals(30, config.getMaxLength());
+        Assert.assertEquals(100, config.getMaxThickness());
+
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            view.setMargins(1, 5, 2, 0);
+            views.add(view);
+        }
+
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+        CommonLogic.calculateLinesAndChildPosition(lines);
+
+        Assert.assertEquals(2, lines.size());
+        Assert.assertEquals(30, lines.get(0).getLineLength());
+        Assert.assertEquals(13, lines.get(0).getLineThickness());
+        Assert.assertEquals(15, views.get(1).getInlineStartLength());
+        Assert.assertEquals(13, lines.get(1).getLineStartThickness());
+
+        config.setOrientation(CommonLogic.HORIZONTAL);
+        Assert.assertEquals(100, config.getMaxLength());
+        Assert.assertEquals(30, config.getMaxThickness());
+    }
+
+    @Test
+    public void VerticalOrientation_GravityAndWeightsMirrorHorizontal() {
+        ConfigDefinition horizontalConfig = new ConfigDefinition();
+        horizontalConfig.setMaxWidth(50);
+        horizontalConfig.setMaxHeight(40);
+        horizontalConfig.setWidthMode(CommonLogic.MODE_EXACTLY);
+        horizontalConfig.setGravity(LayoutGravity.RIGHT | LayoutGravity.CENTER_VERTICAL);
+        ConfigDefinition verticalConfig = new ConfigDefinition();
+        verticalConfig.setOrientation(CommonLogic.VERTICAL);
+        verticalConfig.setMaxWidth(40);
+        verticalConfig.setMaxHeight(50);
+        verticalConfig.setHeightMode(CommonLogic.MODE_EXACTLY);
+        verticalConfig.setGravity(LayoutGravity.BOTTOM | LayoutGravity.CENTER_HORIZONTAL);
+
+        ArrayList<ViewDefinition> horizontalViews = new ArrayList<>();
+        ArrayList<ViewDefinition> verticalViews = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ViewDefinition horizontal = new ViewDefinition(horizontalConfig, null);
+            horizontal.setWidth(8 + i);
+            horizontal.setHeight(4 + 2 * i);
+            horizontal.setMargins(i, 1, 2, i % 2);
+            ViewDefinition vertical = new ViewDefinition(verticalConfig, null);
+            vertical.setWidth(4 + 2 * i);
+            vertical.setHeight(8 + i);
+            vertical.setMargins(1, i, i % 2, 2);
+            if (i == 1) {
+                horizontal.setWeight(1);
+                horizontal.setGravity(LayoutGravity.FILL);
+                vertical.setWeight(1);
+                vertical.setGravity(LayoutGravity.FILL);
+            }
+            if (i == 3) {
+                horizontal.setFullLine(true);
+                vertical.setFullLine(true);
+            }
+            horizontalViews.add(horizontal);
+            verticalViews.add(vertical);
+        }
+
+        ArrayList<LineDefinition> horizontalLines = new ArrayList<>();
+        CommonLogic.fillLines(horizontalViews, horizontalLines, horizontalConfig, new DefinitionPool(horizontalConfig));
+        CommonLogic.calculateLinesAndChildPosition(horizontalLines);
+        CommonLogic.applyGravityToLines(horizontalLines, 50, 40, horizontalConfig);
+        ArrayList<LineDefinition> verticalLines = new ArrayList<>();
+        CommonLogic.fillLines(verticalViews, verticalLines, verticalConfig, new DefinitionPool(verticalConfig));
+        CommonLogic.calculateLinesAndChildPosition(verticalLines);
+        CommonLogic.applyGravityToLines(verticalLines, 50, 40, verticalConfig);
+
+        Assert.assertEquals(3, horizontalLines.size());
+        Assert.assertEquals(horizontalLines.size(), verticalLines.size());
+        for (int i = 0; i < horizontalLines.size(); i++) {
+            LineDefinition horizontalLine = horizontalLines.get(i);
+            LineDefinition verticalLine = verticalLines.get(i);
+            Assert.assertEquals(horizontalLine.getViews().size(), verticalLine.getViews().size());
+            for (int j = 0; j < horizontalLine.getViews().size(); j++) {
+                ViewDefinition horizontal = horizontalLine.getViews().get(j);
+                ViewDefinition vertical = verticalLine.getViews().get(j);
+                Assert.assertEquals(horizontalLine.getX() + horizontal.getInlineX(), verticalLine.getY() + vertical.getInlineY());
+                Assert.assertEquals(horizontalLine.getY() + horizontal.getInlineY(), verticalLine.getX() + vertical.getInlineX());
+                Assert.assertEquals(horizontal.getWidth(), vertical.getHeight());
+                Assert.assertEquals(horizontal.getHeight(), vertical.getWidth());
+            }
+        }
+        // the full line item is stretched to the line length, the first line is pulled to the right
+        Assert.assertEquals(50 - 3 - 2, horizontalViews.get(3).getWidth());
+        Assert.assertEquals(50 - (10 + 12 + 14), horizontalLines.get(0).getLineStartLength());
+    }
+
+    @Test
+    public void RightToLeftItemsReversedInLinesAndVerticalLinesReversed() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(20);
+        config.setMaxHeight(20);
+        config.setLayoutDirection(CommonLogic.LAYOUT_DIRECTION_RTL);
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ViewDefinition view = new ViewDefinition(config, null);
+            view.setWidth(10);
+            view.setHeight(10);
+            views.add(view);
+        }
+
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+
+        Assert.assertEquals(3, lines.size());
+        Assert.assertSame(views.get(1), lines.get(0).getViews().get(0));
+        Assert.assertSame(views.get(0), lines.get(0).getViews().get(1));
+        Assert.assertSame(views.get(3), lines.get(1).getViews().get(0));
+        Assert.assertSame(views.get(4), lines.get(2).getViews().get(0));
+
+        config.setOrientation(CommonLogic.VERTICAL);
+        lines.clear();
+        CommonLogic.fillLines(views, lines, config, new DefinitionPool(config));
+
+        Assert.assertEquals(3, lines.size());
+        Assert.assertSame(views.get(4), lines.get(0).getViews().get(0));
+        Assert.assertSame(views.get(2), lines.get(1).getViews().get(0));
+        Assert.assertSame(views.get(3), lines.get(1).getViews().get(1));
+        Assert.assertSame(views.get(0), lines.get(2).getViews().get(0));
+    }
+
+    @Test
+    public void GravityCacheResolvedAgainWhenConfigChanges() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setGravity(LayoutGravity.RIGHT);
+        GravityCache cache = new GravityCache();
+
+        Assert.assertEquals(LayoutGravity.RIGHT | LayoutGravity.TOP, cache.resolve(LayoutGravity.NO_GRAVITY, config));
+        Assert.assertEquals(LayoutGravity.RIGHT | LayoutGravity.BOTTOM, cache.resolve(LayoutGravity.BOTTOM, config));
+        Assert.assertEquals(LayoutGravity.RIGHT | LayoutGravity.TOP, config.getResolvedGravity());
+
+        config.setOrientation(CommonLogic.VERTICAL);
+
+        Assert.assertEquals(LayoutGravity.RIGHT | LayoutGravity.BOTTOM, cache.resolve(LayoutGravity.BOTTOM, config));
+        Assert.assertEquals(LayoutGravity.BOTTOM | LayoutGravity.LEFT, cache.resolve(LayoutGravity.NO_GRAVITY, config));
+        Assert.assertEquals(LayoutGravity.LEFT | LayoutGravity.BOTTOM, config.getResolvedGravity());
+    }
+
+    @Test
+    public void UniformItemsPerLineAtLeastOneItem() {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setMaxWidth(25);
+
+        Assert.assertEquals(2, CommonLogic.getUniformItemsPerLine(config, 10));
+        Assert.assertEquals(1, CommonLogic.getUniformItemsPerLine(config, 30));
+    }
+
+    @Test
+    public void UniformLineCountRoundsUpAndRespectsMaxLines() {
+        Assert.assertEquals(5, CommonLogic.getUniformLineCount(9, 2, 0));
+        Assert.assertEquals(4, CommonLogic.getUniformLineCount(8, 2, 0));
+        Assert.assertEquals(3, CommonLogic.getUniformLineCount(9, 2, 3));
+    }
+}
@@ -0,0 +1,52 @@
+package org.apmem.tools.layouts;
+
+import junit.framework.Assert;
+import org.apmem.tools.layouts.logic.ConfigDefinition;
+import org.apmem.tools.layouts.logic.DefinitionPool;
+import org.apmem.tools.layouts.logic.LineDefinition;
+import org.apmem.tools.layouts.logic.ViewDefinition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class DefinitionPoolTests {
+    @Test
+    public void ObtainView_ReleasedViewReusedWithoutOldValues() {
+        DefinitionPool pool = new DefinitionPool(new ConfigDefinition());
+        ViewDefinition view = pool.obtainView(null);
+        view.setWidth(10);
+        view.setNewLine(true);
+        view.setMargins(1, 2, 3, 4);
+
+        pool.release(view);
+        ViewDefinition reused = pool.obtainView(null);
+
+        Assert.assertSame(view, reused);
+        Assert.assertEquals(0, reused.getWidth());
+        Assert.assertFalse(reused.isNewLine());
+        Assert.assertEquals(0, reused.getLeftMargin());
+    }
+
+    @Test
+    public void ReleaseAll_LinesReusedEmpty() {
+        ConfigDefinition config = new ConfigDefinition();
+        DefinitionPool pool = new DefinitionPool(config);
+        ArrayList<ViewDefinition> views = new ArrayList<>();
+        ArrayList<LineDefinition> lines = new ArrayList<>();
+        LineDefinition line = pool.obtainLine();
+        ViewDefinition view = pool.obtainView(null);
+        view.setWidth(10);
+        line.addView(view);
+        views.add(view);
+        lines.add(line);
+
+        pool.releaseAll(views, lines);
+
+        Assert.assertTrue(views.isEmpty());
+        Assert.assertTrue(lines.isEmpty());
+        LineDefinition reused = pool.obtainLine();
+        Assert.assertSame(line, reused);
+        Assert.assertEquals(0, reused.getLineLength());
+        Assert.assertTrue(reused.getViews().isEmpty());
+    }
+}
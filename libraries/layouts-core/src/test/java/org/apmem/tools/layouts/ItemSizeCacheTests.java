@@ -0,0 +1,155 @@
+package org.apmem.tools.layouts;
+
+import junit.framework.Assert;
+import org.apmem.tools.layouts.logic.ConfigDefinition;
+import org.apmem.tools.layouts.logic.ItemSizeCache;
+import org.apmem.tools.layouts.logic.ViewDefinition;
+import org.junit.Test;
+
+public class ItemSizeCacheTests {
+    @Test
+    public void Get_ReturnsStoredSizeAndMargins() {
+        ItemSizeCache cache = new ItemSizeCache();
+        ViewDefinition stored = CreateDefinition(10, 20);
+        stored.setMargins(1, 2, 3, 4);
+        stored.setNewLine(true);
+        stored.setFullLine(true);
+        cache.put(42L, stored);
+
+        ViewDefinition view = CreateDefinition(0, 0);
+        Assert.assertTrue(cache.get(42L, view));
+        Assert.assertEquals(10, view.getWidth());
+        Assert.assertEquals(20, view.getHeight());
+        Assert.assertEquals(1, view.getLeftMargin());
+        Assert.assertEquals(4, view.getBottomMargin());
+        Assert.assertTrue(view.isNewLine());
+        Assert.assertTrue(view.isFullLine());
+        Assert.assertFalse(cache.get(43L, view));
+    }
+
+    @Test
+    public void Put_KeepsAllItemsWhenGrowing() {
+        ItemSizeCache cache = new ItemSizeCache();
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i * 31L, CreateDefinition(i, i + 1));
+        }
+
+        Assert.assertEquals(1000, cache.size());
+        ViewDefinition view = CreateDefinition(0, 0);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(cache.get(i * 31L, view));
+            Assert.assertEquals(i, view.getWidth());
+        }
+    }
+
+    @Test
+    public void Remove_OtherItemsStayReachable() {
+        ItemSizeCache cache = new ItemSizeCache();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, CreateDefinition(i, i));
+        }
+
+        for (int i = 0; i < 100; i += 2) {
+            cache.remove(i);
+        }
+
+        Assert.assertEquals(50, cache.size());
+        ViewDefinition view = CreateDefinition(0, 0);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i % 2 == 1, cache.get(i, view));
+        }
+    }
+
+    @Test
+    public void RemovePositions_RemovesOnlyPositionsInRange() {
+        ItemSizeCache cache = new ItemSizeCache();
+        for (int i = 0; i < 10; i++) {
+            cache.put(ItemSizeCache.positionKey(i % 3, i), CreateDefinition(i, i));
+        }
+
+        cache.removePositions(3, 6);
+
+        ViewDefinition view = CreateDefinition(0, 0);
+        Assert.assertEquals(7, cache.size());
+        Assert.assertTrue(cache.get(ItemSizeCache.positionKey(2, 2), view));
+        Assert.assertFalse(cache.get(ItemSizeCache.positionKey(1, 4), view));
+        Assert.assertTrue(cache.get(ItemSizeCache.positionKey(0, 6), view));
+    }
+
+    @Test
+    public void RemovePositions_LargeTable_OtherItemsStayReachable() {
+        ItemSizeCache cache = new ItemSizeCache();
+        for (int i = 0; i < 1000; i++) {
+            cache.put(ItemSizeCache.positionKey(i % 3, i), CreateDefinition(i, i));
+        }
+
+        cache.removePositions(100, 900);
+
+        Assert.assertEquals(200, cache.size());
+        ViewDefinition view = CreateDefinition(0, 0);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i < 100 || i >= 900, cache.get(ItemSizeCache.positionKey(i % 3, i), view));
+        }
+    }
+
+    @Test
+    public void Put_OverMaxSize_EvictsItemNotReadSince() {
+        ItemSizeCache cache = new ItemSizeCache();
+        cache.setMaxSize(4);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, CreateDefinition(i, i));
+        }
+        ViewDefinition view = CreateDefinition(0, 0);
+        Assert.assertTrue(cache.get(1, view));
+
+        cache.put(5, CreateDefinition(5, 5));
+
+        Assert.assertEquals(4, cache.size());
+        Assert.assertTrue(cache.get(1, view));
+        Assert.assertTrue(cache.get(4, view));
+        Assert.assertTrue(cache.get(5, view));
+        Assert.assertEquals(5, view.getWidth());
+    }
+
+    @Test
+    public void SetMaxSize_Lower_EvictsItemsOverLimit() {
+        ItemSizeCache cache = new ItemSizeCache();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i * 31L, CreateDefinition(i, i));
+        }
+
+        cache.setMaxSize(10);
+        Assert.assertEquals(10, cache.size());
+
+        cache.put(-1L, CreateDefinition(0, 0));
+        Assert.assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void Put_Growing_KeepsItemsReadBefore() {
+        ItemSizeCache cache = new ItemSizeCache();
+        cache.setMaxSize(48);
+        // the eviction of one item clears the referenced flags of the others
+        for (int i = 0; i < 49; i++) {
+            cache.put(i, CreateDefinition(i, i));
+        }
+        ViewDefinition view = CreateDefinition(0, 0);
+        Assert.assertTrue(cache.get(10, view));
+
+        cache.setMaxSize(0);
+        for (int i = 100; i < 140; i++) {
+            cache.put(i, CreateDefinition(i, i));
+        }
+        cache.setMaxSize(cache.size() - 47);
+
+        Assert.assertTrue(cache.get(10, view));
+        Assert.assertEquals(10, view.getWidth());
+    }
+
+    private ViewDefinition CreateDefinition(int width, int height) {
+        ViewDefinition view = new ViewDefinition(new ConfigDefinition(), null);
+        view.setWidth(width);
+        view.setHeight(height);
+        return view;
+    }
+}
@@ -1,18 +1,11 @@
 package org.apmem.tools.layouts;
 
-import android.view.View;
 import junit.framework.Assert;
 import org.apmem.tools.layouts.logic.ConfigDefinition;
 import org.apmem.tools.layouts.logic.LineDefinition;
 import org.apmem.tools.layouts.logic.ViewDefinition;
 import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.mockito.Mockito;
-import org.robolectric.RobolectricTestRunner;
-import org.robolectric.annotation.Config;
 
-@RunWith(RobolectricTestRunner.class)
-@Config(manifest= Config.NONE)
 public class LineDefinitionTests {
     @Test
     public void AddView_IncreaseLineLengthForChildLength() {
@@ -0,0 +1,267 @@
+package org.apmem.tools.layouts;
+
+import junit.framework.Assert;
+import org.apmem.tools.layouts.logic.LineIndex;
+import org.junit.Test;
+
+public class LineIndexTests {
+    @Test
+    public void AddLine_LinesFollowEachOther() {
+        LineIndex index = new LineIndex();
+
+        index.addLine(3, 10);
+        index.addLine(5, 20);
+
+        Assert.assertEquals(2, index.getLineCount());
+        Assert.assertEquals(5, index.getItemCount());
+        Assert.assertEquals(3, index.getLineStartPosition(1));
+        Assert.assertEquals(5, index.getLineEndPosition(1));
+        Assert.assertEquals(10, index.getLineStartThickness(1));
+        Assert.assertEquals(30, index.getContentThickness());
+    }
+
+    @Test
+    public void FindLineByPosition_ReturnsLineContainingPosition() {
+        LineIndex index = CreateIndex(1000000);
+
+        Assert.assertEquals(0, index.findLineByPosition(0));
+        Assert.assertEquals(0, index.findLineByPosition(2));
+        Assert.assertEquals(1, index.findLineByPosition(3));
+        Assert.assertEquals(333333, index.findLineByPosition(999999));
+        Assert.assertEquals(-1, index.findLineByPosition(1000000));
+    }
+
+    @Test
+    public void FindLineByThickness_ReturnsLineContainingOffset() {
+        LineIndex index = CreateIndex(1000);
+
+        Assert.assertEquals(0, index.findLineByThickness(-5));
+        Assert.assertEquals(0, index.findLineByThickness(9));
+        Assert.assertEquals(1, index.findLineByThickness(10));
+        Assert.assertEquals(index.getLineCount() - 1, index.findLineByThickness(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void Truncate_KeepsFirstLines() {
+        LineIndex index = CreateIndex(30);
+
+        index.truncate(4);
+
+        Assert.assertEquals(4, index.getLineCount());
+        Assert.assertEquals(12, index.getItemCount());
+        Assert.assertEquals(40, index.getContentThickness());
+    }
+
+    @Test
+    public void Invalidate_LinesAfterInsertedItemsAttachedBackWhenBreaksMatch() {
+        LineIndex index = CreateIndex(30);
+
+        index.invalidate(3, 3, 3);
+        Assert.assertEquals(0, index.getLineCount());
+
+        index.addLine(3, 10);
+        Assert.assertEquals(1, index.getLineCount());
+        index.addLine(6, 10);
+
+        Assert.assertEquals(11, index.getLineCount());
+        Assert.assertEquals(33, index.getItemCount());
+        Assert.assertEquals(110, index.getContentThickness());
+        Assert.assertEquals(9, index.findLineByPosition(29));
+    }
+
+    @Test
+    public void Invalidate_LinesBeforeChangedItemsStayIndexed() {
+        LineIndex index = CreateIndex(30);
+
+        index.invalidate(10, 11, -1);
+
+        Assert.assertEquals(3, index.getLineCount());
+        Assert.assertEquals(9, index.getItemCount());
+
+        index.addLine(11, 15);
+
+        Assert.assertEquals(10, index.getLineCount());
+        Assert.assertEquals(29, index.getItemCount());
+        Assert.assertEquals(105, index.getContentThickness());
+    }
+
+    @Test
+    public void Invalidate_LinesNotMatchingBreaksAreDropped() {
+        LineIndex index = CreateIndex(30);
+
+        index.invalidate(0, 1, 0);
+        index.addLine(4, 10);
+        index.addLine(7, 10);
+
+        Assert.assertEquals(2, index.getLineCount());
+        Assert.assertEquals(7, index.getItemCount());
+
+        index.addLine(9, 10);
+
+        Assert.assertEquals(10, index.getLineCount());
+        Assert.assertEquals(30, index.getItemCount());
+    }
+
+    @Test
+    public void SetLines_RebuildsSavedIndex() {
+        LineIndex index = CreateIndex(30);
+        index.addLine(31, 25);
+
+        LineIndex restored = new LineIndex();
+        restored.setLines(index.getLineEndPositions(), index.getLineThicknesses(), index.getFullLinePositions());
+
+        Assert.assertEquals(11, restored.getLineCount());
+        Assert.assertEquals(31, restored.getItemCount());
+        Assert.assertEquals(125, restored.getContentThickness());
+        Assert.assertEquals(10, restored.findLineByPosition(30));
+    }
+
+    @Test
+    public void SetUniformLines_LinesComputedFromItemsPerLine() {
+        LineIndex index = new LineIndex();
+
+        index.setUniformLines(4, 10, 1000001, 0);
+
+        Assert.assertTrue(index.isUniform());
+        Assert.assertEquals(250001, index.getLineCount());
+        Assert.assertEquals(1000001, index.getItemCount());
+        Assert.assertEquals(1000000, index.getLineEndPosition(249999));
+        Assert.assertEquals(1000001, index.getLineEndPosition(250000));
+        Assert.assertEquals(2500010, index.getContentThickness());
+        Assert.assertEquals(250000, index.findLineByPosition(1000000));
+        Assert.assertEquals(3, index.findLineByThickness(35));
+        Assert.assertEquals(250000, index.findLineByThickness(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void SetUniformLines_MaxLinesLimitsItems() {
+        LineIndex index = new LineIndex();
+
+        index.setUniformLines(4, 10, 100, 3);
+
+        Assert.assertEquals(3, index.getLineCount());
+        Assert.assertEquals(12, index.getItemCount());
+        Assert.assertEquals(-1, index.findLineByPosition(12));
+    }
+
+    @Test
+    public void SetUniformLineThickness_OffsetsComputedFromFirstLine() {
+        LineIndex index = new LineIndex();
+        index.setUniformLineThickness(true);
+
+        index.addLine(3, 12);
+        index.addLine(4, 30);
+        index.addLine(9, 5);
+
+        Assert.assertEquals(3, index.getLineCount());
+        Assert.assertEquals(12, index.getLineThickness(1));
+        Assert.assertEquals(24, index.getLineStartThickness(2));
+        Assert.assertEquals(36, index.getContentThickness());
+        Assert.assertEquals(1, index.findLineByThickness(23));
+        Assert.assertEquals(4, index.getLineStartPosition(2));
+    }
+
+    @Test
+    public void ReplaceLine_OtherLinesKeepPositionsAndMoveByThicknessDifference() {
+        LineIndex index = new LineIndex();
+        index.addLine(3, 10);
+        index.addLine(9, 10, true, false);
+        index.addLine(12, 10);
+
+        Assert.assertEquals(1, index.getEstimatedLineCount());
+        Assert.assertEquals(1, index.findFirstEstimatedLine());
+
+        index.replaceLine(1, new int[]{5, 9}, new int[]{12, 8}, new boolean[]{false, true}, 2);
+
+        Assert.assertEquals(0, index.getEstimatedLineCount());
+        Assert.assertEquals(4, index.getLineCount());
+        Assert.assertEquals(5, index.getLineStartPosition(2));
+        Assert.assertEquals(22, index.getLineStartThickness(2));
+        Assert.assertEquals(9, index.getLineStartPosition(3));
+        Assert.assertEquals(30, index.getLineStartThickness(3));
+        Assert.assertEquals(40, index.getContentThickness());
+        Assert.assertEquals(3, index.findLineByPosition(11));
+        Assert.assertEquals(5, index.findFullLinePosition(8));
+    }
+
+    @Test
+    public void FindFirstEstimatedLine_FollowsReplacedAndDroppedLines() {
+        LineIndex index = new LineIndex();
+        index.addLine(3, 10);
+        index.addLine(6, 10, true, false);
+        index.addLine(9, 10);
+        index.addLine(12, 10, true, false);
+
+        index.replaceLine(1, new int[]{4, 6}, new int[]{5, 5}, new boolean[]{false, false}, 2);
+        Assert.assertEquals(4, index.findFirstEstimatedLine());
+
+        // the lines after the estimated one are attached back
+        index.invalidate(1, 1, 0);
+        index.addLine(6, 10, true, false);
+        Assert.assertEquals(0, index.findFirstEstimatedLine());
+        Assert.assertEquals(2, index.getLineCount());
+
+        index.replaceLine(0, new int[]{6}, new int[]{10}, new boolean[]{false}, 1);
+        Assert.assertEquals(-1, index.findFirstEstimatedLine());
+    }
+
+    @Test
+    public void Invalidate_EstimatedLinesAreNotAttachedBack() {
+        LineIndex index = new LineIndex();
+        index.addLine(3, 10);
+        index.addLine(6, 10, true, false);
+        index.addLine(9, 10);
+
+        index.invalidate(0, 1, 0);
+        index.addLine(3, 10);
+
+        Assert.assertEquals(1, index.getLineCount());
+        Assert.assertEquals(0, index.getEstimatedLineCount());
+    }
+
+    @Test
+    public void FindFullLinePosition_ReturnsLastFullLineAtOrBeforePosition() {
+        LineIndex index = new LineIndex();
+        index.addLine(3, 10);
+        index.addLine(4, 10, false, true);
+        index.addLine(7, 10);
+        index.addLine(8, 10, false, true);
+        index.addLine(11, 10);
+
+        Assert.assertEquals(-1, index.findFullLinePosition(2));
+        Assert.assertEquals(3, index.findFullLinePosition(3));
+        Assert.assertEquals(3, index.findFullLinePosition(6));
+        Assert.assertEquals(7, index.findFullLinePosition(10));
+        Assert.assertEquals(7, index.findNextFullLinePosition(3));
+        Assert.assertEquals(-1, index.findNextFullLinePosition(7));
+        Assert.assertTrue(index.isFullLine(3));
+        Assert.assertFalse(index.isFullLine(2));
+    }
+
+    @Test
+    public void Invalidate_FullLinesKeptAsideAreAttachedBack() {
+        LineIndex index = new LineIndex();
+        index.addLine(3, 10);
+        index.addLine(4, 10, false, true);
+        index.addLine(7, 10);
+        index.addLine(8, 10, false, true);
+
+        index.invalidate(0, 1, 0);
+        Assert.assertEquals(-1, index.findFullLinePosition(7));
+
+        index.addLine(3, 10);
+
+        Assert.assertEquals(4, index.getLineCount());
+        Assert.assertEquals(7, index.findFullLinePosition(7));
+        Assert.assertEquals(3, index.findFullLinePosition(6));
+    }
+
+    private LineIndex CreateIndex(int itemCount) {
+        LineIndex index = new LineIndex();
+        for (int i = 3; i < itemCount; i += 3) {
+            index.addLine(i, 10);
+        }
+        index.addLine(itemCount, 10);
+        return index;
+    }
+}
@@ -0,0 +1,75 @@
+package org.apmem.tools.layouts;
+
+import junit.framework.Assert;
+import org.apmem.tools.layouts.logic.CommonLogic;
+import org.apmem.tools.layouts.logic.ConfigDefinition;
+import org.apmem.tools.layouts.logic.LayoutGravity;
+import org.apmem.tools.layouts.logic.PackedLayout;
+import org.junit.Test;
+
+public class PackedLayoutTests {
+    @Test
+    public void FillLines_ItemsBrokenIntoLinesAndPlaced() {
+        ConfigDefinition config = CreateConfig(25, 100);
+        PackedLayout layout = new PackedLayout(config);
+        for (int i = 0; i < 5; i++) {
+            layout.addItem(10, 10 + i, 1, 0, 1, 0, -1, 0, 0);
+        }
+
+        layout.fillLines();
+        layout.applyGravity(25, 38);
+
+        Assert.assertEquals(3, layout.getLineCount());
+        Assert.assertEquals(2, layout.getLineStartItem(1));
+        Assert.assertEquals(4, layout.getLineEndItem(1));
+        Assert.assertEquals(24, layout.getContentLength());
+        Assert.assertEquals(11 + 13 + 14, layout.getContentThickness());
+        Assert.assertEquals(12, layout.getLeft(3));
+        Assert.assertEquals(11, layout.getTop(3));
+        Assert.assertEquals(5, layout.getLaidOutItemCount());
+    }
+
+    @Test
+    public void RightToLeft_ItemsPlacedFromTheRightWithoutMoving() {
+        ConfigDefinition config = CreateConfig(20, 100);
+        config.setLayoutDirection(CommonLogic.LAYOUT_DIRECTION_RTL);
+        config.setGravity(LayoutGravity.RIGHT);
+        PackedLayout layout = new PackedLayout(config);
+        layout.addItem(5, 10, 0, 0, 0, 0, -1, 0, 0);
+        layout.addItem(10, 10, 0, 0, 0, 0, -1, 0, 0);
+
+        layout.fillLines();
+        layout.applyGravity(20, 100);
+
+        Assert.assertEquals(1, layout.getLineCount());
+        Assert.assertEquals(15, layout.getLeft(0));
+        Assert.assertEquals(5, layout.getLeft(1));
+    }
+
+    @Test
+    public void MaxLines_ItemsAfterLastLineNotLaidOut() {
+        ConfigDefinition config = CreateConfig(20, 100);
+        config.setMaxLines(2);
+        PackedLayout layout = new PackedLayout(config);
+        for (int i = 0; i < 100; i++) {
+            layout.addItem(10, 10, 0, 0, 0, 0, -1, 0, i == 1 ? PackedLayout.FLAG_FULL_LINE : 0);
+        }
+
+        layout.fillLines();
+
+        Assert.assertEquals(2, layout.getLineCount());
+        Assert.assertEquals(2, layout.getLaidOutItemCount());
+        Assert.assertEquals(20, layout.getWidth(1));
+        Assert.assertEquals(100, layout.getItemCount());
+    }
+
+    private ConfigDefinition CreateConfig(int maxWidth, int maxHeight) {
+        ConfigDefinition config = new ConfigDefinition();
+        config.setOrientation(CommonLogic.HORIZONTAL);
+        config.setMaxWidth(maxWidth);
+        config.setMaxHeight(maxHeight);
+        config.setWidthMode(CommonLogic.MODE_EXACTLY);
+        config.setHeightMode(CommonLogic.MODE_EXACTLY);
+        return config;
+    }
+}
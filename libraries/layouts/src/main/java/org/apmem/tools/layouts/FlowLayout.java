@@ -13,34 +13,39 @@ import android.view.ViewGroup;
 
 import org.apmem.tools.layouts.logic.CommonLogic;
 import org.apmem.tools.layouts.logic.ConfigDefinition;
-import org.apmem.tools.layouts.logic.LineDefinition;
-import org.apmem.tools.layouts.logic.ViewDefinition;
+import org.apmem.tools.layouts.logic.GravityCache;
+import org.apmem.tools.layouts.logic.PackedLayout;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
 
 public class FlowLayout extends ViewGroup {
 
     private final ConfigDefinition config;
-    List<LineDefinition> lines = new ArrayList<>();
-    List<ViewDefinition> views = new ArrayList<>();
+    private final PackedLayout packed;
+    private boolean measureCacheValid;
+    private int lastWidthMeasureSpec;
+    private int lastHeightMeasureSpec;
+    private int lastMeasuredWidth;
+    private int lastMeasuredHeight;
 
     public FlowLayout(Context context) {
         super(context);
         this.config = new ConfigDefinition();
+        this.packed = new PackedLayout(this.config);
         readStyleParameters(context, null);
     }
 
     public FlowLayout(Context context, AttributeSet attributeSet) {
         super(context, attributeSet);
         this.config = new ConfigDefinition();
+        this.packed = new PackedLayout(this.config);
         readStyleParameters(context, attributeSet);
     }
 
     public FlowLayout(Context context, AttributeSet attributeSet, int defStyle) {
         super(context, attributeSet, defStyle);
         this.config = new ConfigDefinition();
+        this.packed = new PackedLayout(this.config);
         readStyleParameters(context, attributeSet);
     }
 
@@ -67,11 +72,29 @@ public class FlowLayout extends ViewGroup {
         }
     }
 
+    @Override
+    public void requestLayout() {
+        this.measureCacheValid = false;
+        super.requestLayout();
+    }
+
+    @Override
+    public void forceLayout() {
+        this.measureCacheValid = false;
+        super.forceLayout();
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         final int count = this.getChildCount();
-        views.clear();
-        lines.clear();
+        // parents measure several times per pass, lines stay the same until the specs or the children change
+        if (this.measureCacheValid && widthMeasureSpec == this.lastWidthMeasureSpec && heightMeasureSpec == this.lastHeightMeasureSpec
+                && !hasChildLayoutRequests(count)) {
+            this.setMeasuredDimension(this.lastMeasuredWidth, this.lastMeasuredHeight);
+            return;
+        }
+
+        this.packed.clear();
         for (int i = 0; i < count; i++) {
             final View child = this.getChildAt(i);
             if (child.getVisibility() == GONE) {
@@ -85,14 +108,9 @@ public class FlowLayout extends ViewGroup {
                     getChildMeasureSpec(heightMeasureSpec, this.getPaddingTop() + this.getPaddingBottom(), lp.height)
             );
 
-            ViewDefinition view = new ViewDefinition(this.config, child);
-            view.setWidth(child.getMeasuredWidth());
-            view.setHeight(child.getMeasuredHeight());
-            view.setNewLine(lp.isNewLine());
-            view.setGravity(lp.getGravity());
-            view.setWeight(lp.getWeight());
-            view.setMargins(lp.leftMargin, lp.topMargin, lp.rightMargin, lp.bottomMargin);
-            views.add(view);
+            this.packed.addItem(child.getMeasuredWidth(), child.getMeasuredHeight(),
+                    lp.leftMargin, lp.topMargin, lp.rightMargin, lp.bottomMargin, lp.getWeight(), lp.getResolvedGravity(this.config),
+                    (lp.isNewLine() ? PackedLayout.FLAG_NEW_LINE : 0) | (lp.isFullLine() ? PackedLayout.FLAG_FULL_LINE : 0));
         }
 
         this.config.setMaxWidth(MeasureSpec.getSize(widthMeasureSpec) - this.getPaddingRight() - this.getPaddingLeft());
@@ -101,27 +119,15 @@ public class FlowLayout extends ViewGroup {
         this.config.setHeightMode(MeasureSpec.getMode(heightMeasureSpec));
         this.config.setCheckCanFit(this.config.getLengthMode() != View.MeasureSpec.UNSPECIFIED);
 
-        CommonLogic.fillLines(views, lines, config);
-        CommonLogic.calculateLinesAndChildPosition(lines);
-
-        int contentLength = 0;
-        final int linesCount = lines.size();
-        for (int i = 0; i < linesCount; i++) {
-            LineDefinition l = lines.get(i);
-            contentLength = Math.max(contentLength, l.getLineLength());
-        }
+        this.packed.fillLines();
 
-        LineDefinition currentLine = lines.get(lines.size() - 1);
-        int contentThickness = currentLine.getLineStartThickness() + currentLine.getLineThickness();
+        int contentLength = this.packed.getContentLength();
+        int contentThickness = this.packed.getContentThickness();
         int realControlLength = CommonLogic.findSize(this.config.getLengthMode(), this.config.getMaxLength(), contentLength);
         int realControlThickness = CommonLogic.findSize(this.config.getThicknessMode(), this.config.getMaxThickness(), contentThickness);
 
-        CommonLogic.applyGravityToLines(lines, realControlLength, realControlThickness, config);
-
-        for (int i = 0; i < linesCount; i++) {
-            LineDefinition line = lines.get(i);
-            applyPositionsToViews(line);
-        }
+        this.packed.applyGravity(realControlLength, realControlThickness);
+        applyPositionsToViews(count);
 
         /* need to take padding into account */
         int totalControlWidth = this.getPaddingLeft() + this.getPaddingRight();
@@ -133,40 +139,65 @@ public class FlowLayout extends ViewGroup {
             totalControlWidth += contentThickness;
             totalControlHeight += contentLength;
         }
-        this.setMeasuredDimension(resolveSize(totalControlWidth, widthMeasureSpec), resolveSize(totalControlHeight, heightMeasureSpec));
+        this.lastMeasuredWidth = resolveSize(totalControlWidth, widthMeasureSpec);
+        this.lastMeasuredHeight = resolveSize(totalControlHeight, heightMeasureSpec);
+        this.lastWidthMeasureSpec = widthMeasureSpec;
+        this.lastHeightMeasureSpec = heightMeasureSpec;
+        this.measureCacheValid = true;
+        this.setMeasuredDimension(this.lastMeasuredWidth, this.lastMeasuredHeight);
     }
 
-    private void applyPositionsToViews(LineDefinition line) {
-        final List<ViewDefinition> childViews = line.getViews();
-        final int childCount = childViews.size();
-        for (int i = 0; i < childCount; i++) {
-            final ViewDefinition child = childViews.get(i);
-            final View view = child.getView();
+    /**
+     * Requests of children do not reach this layout while its own request is pending, and a child which already waits
+     * for a layout can change again without a new request. Lines are reused only when no child waits for a layout.
+     */
+    private boolean hasChildLayoutRequests(int count) {
+        for (int i = 0; i < count; i++) {
+            if (this.getChildAt(i).isLayoutRequested()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Items of the packed layout are the children which are not gone, in the order of the children.
+     */
+    private void applyPositionsToViews(int count) {
+        final int laidOutCount = this.packed.getLaidOutItemCount();
+        for (int i = 0, item = 0; i < count && item < laidOutCount; i++) {
+            final View view = this.getChildAt(i);
+            if (view.getVisibility() == GONE) {
+                continue;
+            }
+            final int width = this.packed.getWidth(item);
+            final int height = this.packed.getHeight(item);
+            item++;
+            // only children stretched by gravity, weight or full line are measured again
+            if (view.getMeasuredWidth() == width && view.getMeasuredHeight() == height) {
+                continue;
+            }
             view.measure(
-                    MeasureSpec.makeMeasureSpec(child.getWidth(), MeasureSpec.EXACTLY),
-                    MeasureSpec.makeMeasureSpec(child.getHeight(), MeasureSpec.EXACTLY)
+                    MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY)
             );
         }
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        final int linesCount = this.lines.size();
-        for (int i = 0; i < linesCount; i++) {
-            final LineDefinition line = this.lines.get(i);
-
-            final int count = line.getViews().size();
-            for (int j = 0; j < count; j++) {
-                ViewDefinition child = line.getViews().get(j);
-                View view = child.getView();
-                LayoutParams lp = (LayoutParams) view.getLayoutParams();
-                view.layout(
-                        this.getPaddingLeft() + line.getX() + child.getInlineX() + lp.leftMargin,
-                        this.getPaddingTop() + line.getY() + child.getInlineY() + lp.topMargin,
-                        this.getPaddingLeft() + line.getX() + child.getInlineX() + lp.leftMargin + child.getWidth(),
-                        this.getPaddingTop() + line.getY() + child.getInlineY() + lp.topMargin + child.getHeight()
-                );
+        final int count = this.getChildCount();
+        final int laidOutCount = this.packed.getLaidOutItemCount();
+        for (int i = 0, item = 0; i < count && item < laidOutCount; i++) {
+            final View view = this.getChildAt(i);
+            if (view.getVisibility() == GONE) {
+                continue;
             }
+            final LayoutParams lp = (LayoutParams) view.getLayoutParams();
+            final int left = this.getPaddingLeft() + this.packed.getLeft(item) + lp.leftMargin;
+            final int top = this.getPaddingTop() + this.packed.getTop(item) + lp.topMargin;
+            view.layout(left, top, left + this.packed.getWidth(item), top + this.packed.getHeight(item));
+            item++;
         }
     }
 
@@ -362,8 +393,10 @@ public class FlowLayout extends ViewGroup {
         })
 
         private boolean newLine = false;
+        private boolean fullLine = false;
         private int gravity = Gravity.NO_GRAVITY;
         private float weight = -1.0f;
+        private final GravityCache gravityCache = new GravityCache();
 
         public LayoutParams(Context context, AttributeSet attributeSet) {
             super(context, attributeSet);
@@ -382,6 +415,7 @@ public class FlowLayout extends ViewGroup {
             TypedArray a = context.obtainStyledAttributes(attributeSet, R.styleable.FlowLayout_LayoutParams);
             try {
                 this.newLine = a.getBoolean(R.styleable.FlowLayout_LayoutParams_layout_newLine, false);
+                this.fullLine = a.getBoolean(R.styleable.FlowLayout_LayoutParams_layout_fullLine, false);
                 this.gravity = a.getInt(R.styleable.FlowLayout_LayoutParams_android_layout_gravity, Gravity.NO_GRAVITY);
                 this.weight = a.getFloat(R.styleable.FlowLayout_LayoutParams_layout_weight, -1.0f);
             } finally {
@@ -397,6 +431,13 @@ public class FlowLayout extends ViewGroup {
             this.gravity = gravity;
         }
 
+        /**
+         * @return gravity resolved for the config of the layout, computed again only after the gravity or the config changes
+         */
+        public int getResolvedGravity(ConfigDefinition config) {
+            return this.gravityCache.resolve(this.gravity, config);
+        }
+
         public float getWeight() {
             return weight;
         }
@@ -412,5 +453,13 @@ public class FlowLayout extends ViewGroup {
         public void setNewLine(boolean newLine) {
             this.newLine = newLine;
         }
+
+        public boolean isFullLine() {
+            return fullLine;
+        }
+
+        public void setFullLine(boolean fullLine) {
+            this.fullLine = fullLine;
+        }
     }
 }
@@ -3,42 +3,132 @@ package org.apmem.tools.layouts;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.PointF;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.v7.widget.LinearSmoothScroller;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewDebug;
 import android.view.ViewGroup;
 import org.apmem.tools.layouts.logic.CommonLogic;
 import org.apmem.tools.layouts.logic.ConfigDefinition;
+import org.apmem.tools.layouts.logic.DefinitionPool;
+import org.apmem.tools.layouts.logic.GravityCache;
+import org.apmem.tools.layouts.logic.ItemSizeCache;
 import org.apmem.tools.layouts.logic.LineDefinition;
+import org.apmem.tools.layouts.logic.LineIndex;
 import org.apmem.tools.layouts.logic.ViewDefinition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-public class FlowLayoutManager extends RecyclerView.LayoutManager {
+public class FlowLayoutManager extends RecyclerView.LayoutManager implements RecyclerView.SmoothScroller.ScrollVectorProvider {
+    private static final int DEFAULT_MAX_CACHED_SIZES = 2048;
+    private static final int SAVED_LINES_AFTER_ANCHOR = 32;
+    private static final int MAX_SAVED_LINES = 512;
+    private static final long REFINE_BUDGET_NANOS = 2000000;
 
     private final ConfigDefinition config;
     List<LineDefinition> lines = new ArrayList<>();
     List<ViewDefinition> views = new ArrayList<>();
+    private final DefinitionPool pool;
+    private final LineIndex lineIndex = new LineIndex();
+    private int extraLayoutSpace = 0;
+    private int scrollOffset = 0;
+    private int firstAttachedLine = -1;
+    private int lastAttachedLine = -1;
+    private final ItemSizeCache sizeCache = new ItemSizeCache();
+    private RecyclerView.Adapter<?> adapter;
+    private boolean preLayout;
+    private ViewDefinition pendingItem;
+    private int pendingPosition;
+    private int pendingScrollPosition = RecyclerView.NO_POSITION;
+    private int pendingScrollOffset;
+    private int anchorPosition = RecyclerView.NO_POSITION;
+    private int anchorOffset;
+    private int lastLineThickness;
+    private int initialPrefetchItemCount = 2;
+    private SavedState pendingSavedState;
+    private ViewDefinition uniformItem;
+    private ItemSizeProvider itemSizeProvider;
+    private boolean sizeEstimation = true;
+    private final ItemSizeCache sizeEstimates = new ItemSizeCache();
+    private boolean refineQueued;
+    private boolean refineLayout;
+    private final MessageQueue.IdleHandler refineRequest = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            refineQueued = false;
+            if (isScrollIdle()) {
+                refineLayout = true;
+                requestLayout();
+            }
+            return false;
+        }
+    };
+    private final SparseArray<View> measuredViews = new SparseArray<>();
+    private int[] refinedLineEnds = new int[4];
+    private int[] refinedLineThicknesses = new int[4];
+    private boolean[] refinedFullLines = new boolean[4];
+    private boolean lastLineFullLine;
+    private boolean stickyHeaders;
+    private View pinnedHeader;
+    private int pinnedHeaderPosition;
+    private int pinnedHeaderStart;
+    private int pinnedHeaderShift;
+    private boolean pinnedHeaderInLine;
+    private int pinnedHeaderIndex = -1;
+    private RecyclerView recyclerView;
+    private RecyclerView.ChildDrawingOrderCallback childDrawingOrder;
+    private int headerDrawingIndex;
+    private final RecyclerView.ChildDrawingOrderCallback headerDrawingOrder = new RecyclerView.ChildDrawingOrderCallback() {
+        @Override
+        public int onGetChildDrawingOrder(int childCount, int i) {
+            final int headerIndex = findPinnedHeaderIndex(childCount);
+            if (headerIndex < 0) {
+                return getChildDrawingOrder(childCount, i);
+            }
+            if (i == 0) {
+                // the header is taken out of the order of the callback and drawn last
+                headerDrawingIndex = 0;
+                while (headerDrawingIndex < childCount - 1 && getChildDrawingOrder(childCount, headerDrawingIndex) != headerIndex) {
+                    headerDrawingIndex++;
+                }
+            }
+            if (i == childCount - 1) {
+                return headerIndex;
+            }
+            return getChildDrawingOrder(childCount, i < headerDrawingIndex ? i : i + 1);
+        }
+    };
 
     public FlowLayoutManager(ConfigDefinition config) {
         this.config = config;
+        this.pool = new DefinitionPool(config);
+        this.sizeCache.setMaxSize(DEFAULT_MAX_CACHED_SIZES);
     }
 
     public FlowLayoutManager() {
         this.config = new ConfigDefinition();
+        this.pool = new DefinitionPool(this.config);
+        this.sizeCache.setMaxSize(DEFAULT_MAX_CACHED_SIZES);
     }
 
     @Override
     public boolean checkLayoutParams(RecyclerView.LayoutParams lp) {
-        return super.checkLayoutParams(lp);
+        return lp instanceof LayoutParams;
     }
 
     @Override
     public RecyclerView.LayoutParams generateDefaultLayoutParams() {
-        return null;
+        return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
     }
 
     @Override
@@ -51,74 +141,1593 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
         return new LayoutParams(p);
     }
 
+    /**
+     * Extra space (in pixels along the line thickness axis) laid out before and after the visible area.
+     * Items whose lines are outside of the visible area plus this margin are not bound.
+     */
+    public int getExtraLayoutSpace() {
+        return this.extraLayoutSpace;
+    }
+
+    public void setExtraLayoutSpace(int extraLayoutSpace) {
+        this.extraLayoutSpace = Math.max(0, extraLayoutSpace);
+        this.requestLayout();
+    }
+
+    /**
+     * Number of items bound ahead of time when this RecyclerView is nested in another one and is about to come into view.
+     */
+    public int getInitialPrefetchItemCount() {
+        return this.initialPrefetchItemCount;
+    }
+
+    public void setInitialPrefetchItemCount(int initialPrefetchItemCount) {
+        this.initialPrefetchItemCount = Math.max(0, initialPrefetchItemCount);
+    }
+
+    public int getMaxCachedSizes() {
+        return this.sizeCache.getMaxSize();
+    }
+
+    /**
+     * Number of measured item sizes kept, so scrolling back does not measure the items again. Sizes of the items
+     * not laid out or indexed recently are dropped first, those items are measured again when they come back.
+     *
+     * @param maxCachedSizes 0 keeps the sizes of all measured items
+     */
+    public void setMaxCachedSizes(int maxCachedSizes) {
+        this.sizeCache.setMaxSize(maxCachedSizes);
+    }
+
+    public ItemSizeProvider getItemSizeProvider() {
+        return this.itemSizeProvider;
+    }
+
+    /**
+     * Sizes from the provider are used instead of measuring the items, so lines are broken without binding them.
+     * Only the items of the laid out lines are bound.
+     */
+    public void setItemSizeProvider(ItemSizeProvider itemSizeProvider) {
+        this.itemSizeProvider = itemSizeProvider;
+        saveAnchor();
+        this.lineIndex.clear();
+        this.requestLayout();
+    }
+
+    public boolean isSizeEstimation() {
+        return this.sizeEstimation;
+    }
+
+    /**
+     * Lines which are indexed but not laid out, e.g. the ones before the target of a far jump, are built from
+     * the last measured size of the item view type instead of binding the items. They are measured a few at a time
+     * in layout passes requested while the main thread is idle and the list does not scroll, or right before they are laid out. Corrections before the visible lines move the scroll offset, so the content
+     * does not jump. Not used together with max lines.
+     * <p/>
+     * On by default. Without it and without an {@link ItemSizeProvider}, a jump binds and measures every item
+     * between the indexed lines and the target.
+     */
+    public void setSizeEstimation(boolean sizeEstimation) {
+        this.sizeEstimation = sizeEstimation;
+        if (!sizeEstimation) {
+            saveAnchor();
+            this.lineIndex.clear();
+            this.requestLayout();
+        }
+    }
+
+    public boolean isStickyHeaders() {
+        return this.stickyHeaders;
+    }
+
+    /**
+     * Full line items are section headers: the last one before the first visible line stays pinned at the start
+     * of the visible area until the next one pushes it out. The header is found by binary search over the full line
+     * positions of the line index. Children stay in adapter order: the view of an attached header line is moved in place,
+     * a header whose line is not attached is one extra view after the line items. The pinned header is drawn over the lines
+     * by a child drawing order callback, which puts the header after the order of {@link #setChildDrawingOrderCallback}.
+     * Headers in lines built from estimated sizes are known once the lines are measured.
+     */
+    public void setStickyHeaders(boolean stickyHeaders) {
+        if (this.recyclerView != null && this.stickyHeaders != stickyHeaders) {
+            this.recyclerView.setChildDrawingOrderCallback(stickyHeaders ? this.headerDrawingOrder : this.childDrawingOrder);
+        }
+        this.stickyHeaders = stickyHeaders;
+        this.requestLayout();
+    }
+
+    public RecyclerView.ChildDrawingOrderCallback getChildDrawingOrderCallback() {
+        return this.childDrawingOrder;
+    }
+
+    /**
+     * Drawing order of the children. RecyclerView gives no access to its callback, so with sticky headers
+     * the order is set here: the pinned header is drawn after the children in this order. The callback
+     * is set on the RecyclerView while the headers are off and when the layout manager is detached.
+     */
+    public void setChildDrawingOrderCallback(RecyclerView.ChildDrawingOrderCallback childDrawingOrder) {
+        this.childDrawingOrder = childDrawingOrder;
+        if (this.recyclerView != null) {
+            this.recyclerView.setChildDrawingOrderCallback(this.stickyHeaders ? this.headerDrawingOrder : childDrawingOrder);
+        }
+    }
+
+    private int getChildDrawingOrder(int childCount, int i) {
+        return this.childDrawingOrder == null ? i : this.childDrawingOrder.onGetChildDrawingOrder(childCount, i);
+    }
+
+    private boolean canEstimateSizes() {
+        return this.sizeEstimation && this.config.getMaxLines() <= 0;
+    }
+
+    @Override
+    public void onAttachedToWindow(RecyclerView view) {
+        super.onAttachedToWindow(view);
+        this.adapter = view.getAdapter();
+        this.recyclerView = view;
+        if (this.stickyHeaders) {
+            view.setChildDrawingOrderCallback(this.headerDrawingOrder);
+        }
+    }
+
+    @Override
+    public void onDetachedFromWindow(RecyclerView view, RecyclerView.Recycler recycler) {
+        super.onDetachedFromWindow(view, recycler);
+        Looper.myQueue().removeIdleHandler(this.refineRequest);
+        this.refineQueued = false;
+        if (this.stickyHeaders) {
+            view.setChildDrawingOrderCallback(this.childDrawingOrder);
+        }
+        this.recyclerView = null;
+    }
+
+    // raw types come from the signature in RecyclerView
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
+        removeAllViews();
+        this.pinnedHeader = null;
+        this.adapter = newAdapter;
+        this.sizeCache.clear();
+        this.sizeEstimates.clear();
+        this.uniformItem = null;
+        this.lineIndex.clear();
+        this.scrollOffset = 0;
+        this.firstAttachedLine = -1;
+        this.lastAttachedLine = -1;
+    }
+
+    @Override
+    public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+        saveAnchor();
+        if (this.anchorPosition >= positionStart) {
+            this.anchorPosition += itemCount;
+        }
+        this.lineIndex.invalidate(positionStart, positionStart, itemCount);
+        invalidatePositionSizes(positionStart, Integer.MAX_VALUE);
+        invalidateAttachedLines();
+    }
+
+    @Override
+    public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+        saveAnchor();
+        if (this.anchorPosition >= positionStart + itemCount) {
+            this.anchorPosition -= itemCount;
+        } else if (this.anchorPosition >= positionStart) {
+            this.anchorPosition = positionStart;
+        }
+        this.lineIndex.invalidate(positionStart, positionStart + itemCount, -itemCount);
+        invalidatePositionSizes(positionStart, Integer.MAX_VALUE);
+        invalidateAttachedLines();
+    }
+
+    @Override
+    public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+        saveAnchor();
+        this.lineIndex.invalidate(positionStart, positionStart + itemCount, 0);
+        if (this.adapter != null && this.adapter.hasStableIds()) {
+            for (int position = positionStart; position < positionStart + itemCount; position++) {
+                this.sizeCache.remove(this.adapter.getItemId(position));
+            }
+        } else {
+            this.sizeCache.removePositions(positionStart, positionStart + itemCount);
+        }
+        invalidateAttachedLines();
+    }
+
+    @Override
+    public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+        saveAnchor();
+        final int changedStart = Math.min(from, to);
+        final int firstUnchanged = Math.max(from, to) + itemCount;
+        if (this.anchorPosition >= changedStart && this.anchorPosition < firstUnchanged) {
+            this.anchorPosition = changedStart;
+        }
+        this.lineIndex.invalidate(changedStart, firstUnchanged, 0);
+        invalidatePositionSizes(changedStart, firstUnchanged);
+        invalidateAttachedLines();
+    }
+
+    @Override
+    public void onItemsChanged(RecyclerView recyclerView) {
+        saveAnchor();
+        this.lineIndex.clear();
+        this.sizeCache.clear();
+        this.uniformItem = null;
+        invalidateAttachedLines();
+    }
+
+    /**
+     * Sizes cached by position belong to other items after the structure changes, the ones cached by stable id stay valid.
+     */
+    private void invalidatePositionSizes(int fromPosition, int toPosition) {
+        if (this.adapter == null || !this.adapter.hasStableIds()) {
+            this.sizeCache.removePositions(fromPosition, toPosition);
+        }
+    }
+
+    /**
+     * @return key of the item in the size cache, its stable id if the adapter has them
+     */
+    private long getItemKey(int position) {
+        if (this.adapter == null) {
+            return ItemSizeCache.positionKey(0, position);
+        }
+        if (this.adapter.hasStableIds()) {
+            return this.adapter.getItemId(position);
+        }
+        return ItemSizeCache.positionKey(this.adapter.getItemViewType(position), position);
+    }
+
+    /**
+     * Attached lines which are not indexed any more after adapter updates do not describe the children.
+     * They are forgotten and a layout pass is requested. A scroll before it finds them again with {@link #reattachLines}.
+     */
+    private void invalidateAttachedLines() {
+        if (this.lastAttachedLine >= this.lineIndex.getLineCount()) {
+            this.firstAttachedLine = -1;
+            this.lastAttachedLine = -1;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Remembers the first visible line before the line index is changed by adapter updates.
+     */
+    private void saveAnchor() {
+        if (this.anchorPosition != RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        final int line = findFirstVisibleLine();
+        if (line >= 0) {
+            this.anchorPosition = this.lineIndex.getLineStartPosition(line);
+            this.anchorOffset = this.lineIndex.getLineStartThickness(line) - this.scrollOffset;
+        }
+    }
+
+    @Override
+    public boolean supportsPredictiveItemAnimations() {
+        return true;
+    }
+
     @Override
     public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
-        detachAndScrapAttachedViews(recycler);
+        this.preLayout = state.isPreLayout();
+        if (this.preLayout) {
+            layoutAppearingItems(recycler, state);
+            return;
+        }
 
-        final int count = this.getItemCount();
-        views.clear();
-        lines.clear();
-        for (int i = 0; i < count; i++) {
-            View child = recycler.getViewForPosition(i);
-            addView(child);
-            measureChildWithMargins(child, 0, 0);
+        if (this.refineLayout) {
+            this.refineLayout = false;
+            if (canRefineInPlace(state)) {
+                unpinHeader();
+                refineEstimatedLines(recycler);
+                pinHeader(recycler);
+                queueRefine();
+                return;
+            }
+            // the lines are laid out again anyway, the refinement runs after them
+            this.refineLayout = true;
+        }
 
-            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        final int count = state.getItemCount();
+        // an extra header view goes to the recycler, so it is not laid out as a disappearing view next to the pinned one
+        unpinHeader();
+        releasePinnedHeader(recycler);
+        if (count == 0) {
+            removeAndRecycleAllViews(recycler);
+            this.pendingScrollPosition = RecyclerView.NO_POSITION;
+            this.anchorPosition = RecyclerView.NO_POSITION;
+            this.lineIndex.clear();
+            this.scrollOffset = 0;
+            this.firstAttachedLine = -1;
+            this.lastAttachedLine = -1;
+            return;
+        }
 
-            ViewDefinition view = new ViewDefinition(this.config, child);
-            view.setWidth(child.getMeasuredWidth());
-            view.setHeight(child.getMeasuredHeight());
-            view.setNewLine(lp.isNewLine());
-            view.setGravity(lp.getGravity());
-            view.setWeight(lp.getWeight());
-            view.setMargins(lp.leftMargin, lp.topMargin, lp.rightMargin, lp.bottomMargin);
-            views.add(view);
+        // keep the first visible line at the same place
+        int anchorPosition = 0;
+        int anchorOffset = 0;
+        if (this.pendingScrollPosition != RecyclerView.NO_POSITION) {
+            anchorPosition = this.pendingScrollPosition;
+            anchorOffset = this.pendingScrollOffset;
+            final int line = this.lineIndex.findLineByPosition(anchorPosition);
+            if (line >= 0) {
+                anchorPosition = this.lineIndex.getLineStartPosition(line);
+            }
+        } else if (this.pendingSavedState != null) {
+            anchorPosition = this.pendingSavedState.anchorPosition;
+            anchorOffset = this.pendingSavedState.anchorOffset;
+        } else if (this.anchorPosition != RecyclerView.NO_POSITION) {
+            // line index was already invalidated by adapter updates
+            anchorPosition = this.anchorPosition;
+            anchorOffset = this.anchorOffset;
+        } else {
+            final int line = findFirstVisibleLine();
+            if (line >= 0) {
+                anchorPosition = this.lineIndex.getLineStartPosition(line);
+                anchorOffset = this.lineIndex.getLineStartThickness(line) - this.scrollOffset;
+            }
         }
+        this.pendingScrollPosition = RecyclerView.NO_POSITION;
+        this.anchorPosition = RecyclerView.NO_POSITION;
+
+        detachAndScrapAttachedViews(recycler);
+        this.firstAttachedLine = -1;
+        this.lastAttachedLine = -1;
 
+        final int previousMaxLength = this.config.getMaxLength();
+        final int previousMaxThickness = this.config.getMaxThickness();
         this.config.setMaxWidth(this.getWidth() - this.getPaddingRight() - this.getPaddingLeft());
         this.config.setMaxHeight(this.getHeight() - this.getPaddingTop() - this.getPaddingBottom());
         this.config.setWidthMode(View.MeasureSpec.EXACTLY);
         this.config.setHeightMode(View.MeasureSpec.EXACTLY);
         this.config.setCheckCanFit(true);
 
-        CommonLogic.fillLines(views, lines, config);
+        if (previousMaxLength != this.config.getMaxLength()) {
+            this.lineIndex.clear();
+        }
+        if (previousMaxLength != this.config.getMaxLength() || previousMaxThickness != this.config.getMaxThickness()) {
+            // match_parent items are measured against the size of the RecyclerView
+            this.sizeCache.clear();
+            this.sizeEstimates.clear();
+            this.uniformItem = null;
+        }
+        applyLineMode(recycler, count);
+        // the mode is applied first, switching it clears the index
+        restoreLineIndex(count);
+        layoutFromAnchor(recycler, count, anchorPosition, anchorOffset);
+
+        recyclePendingView(recycler);
+        if (this.refineLayout) {
+            this.refineLayout = false;
+            refineEstimatedLines(recycler);
+        }
+        layoutDisappearingViews(recycler, state);
+        pinHeader(recycler);
+        queueRefine();
+    }
+
+    @Override
+    public void onScrollStateChanged(int state) {
+        if (state == RecyclerView.SCROLL_STATE_IDLE) {
+            queueRefine();
+        }
+    }
+
+    private boolean isScrollIdle() {
+        return this.recyclerView != null && this.recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE;
+    }
+
+    /**
+     * Lines built from estimated sizes are measured when the main thread is idle and the list does not scroll:
+     * the idle handler requests one layout pass, which measures lines for a time budget and queues the handler again
+     * if some are left. Scrolling lines into the window measures them as they are laid out.
+     */
+    private void queueRefine() {
+        if (!this.refineQueued && this.lineIndex.getEstimatedLineCount() > 0 && isScrollIdle()) {
+            this.refineQueued = true;
+            Looper.myQueue().addIdleHandler(this.refineRequest);
+        }
+    }
+
+    /**
+     * A layout pass requested only for the refinement keeps the children where they are, unless something else
+     * which needs them laid out again happened since the last pass.
+     */
+    private boolean canRefineInPlace(RecyclerView.State state) {
+        final int width = this.getWidth() - this.getPaddingRight() - this.getPaddingLeft();
+        final int height = this.getHeight() - this.getPaddingTop() - this.getPaddingBottom();
+        final boolean horizontal = this.config.getOrientation() == CommonLogic.HORIZONTAL;
+        if (this.firstAttachedLine < 0 || state.didStructureChange() || this.pendingScrollPosition != RecyclerView.NO_POSITION
+                || this.pendingSavedState != null || this.anchorPosition != RecyclerView.NO_POSITION
+                || this.config.getMaxLength() != (horizontal ? width : height) || this.config.getMaxThickness() != (horizontal ? height : width)) {
+            return false;
+        }
+
+        final int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            if (getChildAt(i).isLayoutRequested()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Measures lines built from estimated sizes in adapter order until the time budget is used up, so the layout
+     * which jumped far binds only the lines it shows. Lines before the attached ones move the scroll offset
+     * by their thickness difference, the children stay where they are.
+     */
+    private void refineEstimatedLines(RecyclerView.Recycler recycler) {
+        final long deadline = System.nanoTime() + REFINE_BUDGET_NANOS;
+        while (this.lineIndex.getEstimatedLineCount() > 0 && System.nanoTime() < deadline) {
+            refineLine(recycler, this.lineIndex.findFirstEstimatedLine(), false);
+        }
+    }
+
+    private void applyLineMode(RecyclerView.Recycler recycler, int count) {
+        if (this.config.isUniformItemSize()) {
+            applyUniformLines(recycler, count);
+        } else {
+            if (this.lineIndex.isUniform()) {
+                this.lineIndex.clear();
+            }
+            this.lineIndex.setUniformLineThickness(this.config.isUniformLineThickness());
+        }
+    }
+
+    /**
+     * Lays out the line of the anchor item at anchorOffset from the start of the visible area and fills the window around it.
+     * Lines before the anchor which are not indexed yet are measured.
+     */
+    private void layoutFromAnchor(RecyclerView.Recycler recycler, int count, int anchorPosition, int anchorOffset) {
+        anchorPosition = Math.min(anchorPosition, count - 1);
+        while (this.lineIndex.getItemCount() < anchorPosition && canAddLine(count)) {
+            indexLine(recycler, count);
+        }
+
+        int anchorLine;
+        if (this.lineIndex.getItemCount() > anchorPosition) {
+            anchorLine = this.lineIndex.findLineByPosition(anchorPosition);
+            if (this.lineIndex.isLineEstimated(anchorLine)) {
+                refineLine(recycler, anchorLine, true);
+                anchorLine = this.lineIndex.findLineByPosition(anchorPosition);
+            }
+        } else if (canAddLine(count)) {
+            // anchor starts the next line, it is broken while laid out
+            anchorLine = this.lineIndex.getLineCount();
+        } else {
+            anchorLine = this.lineIndex.getLineCount() - 1;
+            anchorOffset = 0;
+        }
+
+        this.scrollOffset = getLineStartThickness(anchorLine) - anchorOffset;
+        layoutLine(recycler, anchorLine, count, false);
+        fill(recycler, count);
+
+        // do not leave empty space after the last line or before the first one
+        int correction = 0;
+        if (!canAddLine(count) && this.lastAttachedLine == this.lineIndex.getLineCount() - 1) {
+            correction = Math.min(0, this.lineIndex.getLineEndThickness(this.lastAttachedLine) - this.config.getMaxThickness() - this.scrollOffset);
+        }
+        correction = Math.max(correction, -this.scrollOffset);
+        if (correction != 0) {
+            offsetChildren(-correction);
+            this.scrollOffset += correction;
+            fill(recycler, count);
+        }
+    }
+
+    /**
+     * Pre-layout pass of predictive animations. Attached views stay where they are (positions are the ones before the change),
+     * items which will move into the space freed by removed items are laid out in lines after the last attached one,
+     * so they can slide in from there. The line index is not touched, it already describes the layout after the change.
+     */
+    private void layoutAppearingItems(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        final int childCount = getChildCount();
+        int removedCount = 0;
+        int lastPosition = -1;
+        int lineStartThickness = 0;
+        for (int i = 0; i < childCount; i++) {
+            final View child = getChildAt(i);
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (lp.isItemRemoved()) {
+                removedCount++;
+            }
+            lastPosition = Math.max(lastPosition, getPosition(child));
+            lineStartThickness = Math.max(lineStartThickness, getThicknessEnd(child));
+        }
+
+        final int endPosition = Math.min(state.getItemCount(), lastPosition + 1 + removedCount);
+        int position = lastPosition + 1;
+        while (position < endPosition) {
+            position = layoutItems(recycler, position, endPosition, true, false, lineStartThickness);
+            lineStartThickness += this.lastLineThickness;
+        }
+        recyclePendingView(recycler);
+    }
+
+    /**
+     * Views which were visible before adapter changes and are not in the window any more are laid out
+     * where they moved to, just outside the window, so they can slide out there.
+     */
+    private void layoutDisappearingViews(RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (!state.willRunPredictiveAnimations() || getChildCount() == 0) {
+            return;
+        }
+
+        final int firstPosition = this.lineIndex.getLineStartPosition(this.firstAttachedLine);
+        final int lastPosition = this.lineIndex.getLineEndPosition(this.lastAttachedLine) - 1;
+        // the view of the header stays in the scrap, so pinning it does not bind a second view for the same position
+        final int headerPosition = findPinnedHeaderPosition();
+        final List<RecyclerView.ViewHolder> scrapList = new ArrayList<>(recycler.getScrapList());
+        for (RecyclerView.ViewHolder holder : scrapList) {
+            final View view = holder.itemView;
+            final LayoutParams lp = (LayoutParams) view.getLayoutParams();
+            if (lp.isItemRemoved()) {
+                continue;
+            }
+
+            final int position = getPosition(view);
+            if (position == headerPosition) {
+                continue;
+            }
+            final int line = this.lineIndex.findLineByPosition(position);
+            final int thickness = getThicknessEnd(view) - getThicknessStart(view);
+            int lineStartThickness;
+            if (position > lastPosition) {
+                lineStartThickness = line > this.lastAttachedLine ? this.lineIndex.getLineStartThickness(line) : this.lineIndex.getLineEndThickness(this.lastAttachedLine);
+            } else if (position < firstPosition) {
+                lineStartThickness = line >= 0 ? this.lineIndex.getLineStartThickness(line) : this.lineIndex.getLineStartThickness(this.firstAttachedLine) - thickness;
+            } else {
+                continue;
+            }
+
+            addDisappearingView(view);
+            moveAlongThickness(view, lineStartThickness - this.scrollOffset - getThicknessStart(view));
+        }
+    }
+
+    /**
+     * @return end of the child including its margins along the thickness axis, relative to the start of the visible area
+     */
+    private int getThicknessEnd(View child) {
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        if (this.config.getOrientation() == CommonLogic.HORIZONTAL) {
+            return getDecoratedBottom(child) + lp.bottomMargin - this.getPaddingTop();
+        } else if (isThicknessMirrored()) {
+            return this.getPaddingLeft() + this.config.getMaxThickness() - getDecoratedLeft(child) + lp.leftMargin;
+        } else {
+            return getDecoratedRight(child) + lp.rightMargin - this.getPaddingLeft();
+        }
+    }
+
+    /**
+     * @return start of the child including its margins along the thickness axis, relative to the start of the visible area
+     */
+    private int getThicknessStart(View child) {
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        if (this.config.getOrientation() == CommonLogic.HORIZONTAL) {
+            return getDecoratedTop(child) - lp.topMargin - this.getPaddingTop();
+        } else if (isThicknessMirrored()) {
+            return this.getPaddingLeft() + this.config.getMaxThickness() - getDecoratedRight(child) - lp.rightMargin;
+        } else {
+            return getDecoratedLeft(child) - lp.leftMargin - this.getPaddingLeft();
+        }
+    }
+
+    private void moveAlongThickness(View child, int offset) {
+        final int left = getDecoratedLeft(child);
+        final int top = getDecoratedTop(child);
+        final int right = getDecoratedRight(child);
+        final int bottom = getDecoratedBottom(child);
+        if (this.config.getOrientation() == CommonLogic.HORIZONTAL) {
+            layoutDecorated(child, left, top + offset, right, bottom + offset);
+        } else if (isThicknessMirrored()) {
+            layoutDecorated(child, left - offset, top, right - offset, bottom);
+        } else {
+            layoutDecorated(child, left + offset, top, right + offset, bottom);
+        }
+    }
+
+    /**
+     * Saves the anchor and the lines up to a few after it, so only the lines around the anchor are bound after a restore.
+     * Lines are not saved at all when there are too many of them before the anchor, they are measured again then.
+     */
+    @Override
+    public Parcelable onSaveInstanceState() {
+        if (this.pendingSavedState != null) {
+            return new SavedState(this.pendingSavedState);
+        }
+
+        SavedState state = new SavedState();
+        state.maxLength = this.config.getMaxLength();
+        state.itemCount = getItemCount();
+        if (this.pendingScrollPosition != RecyclerView.NO_POSITION) {
+            state.anchorPosition = this.pendingScrollPosition;
+            state.anchorOffset = this.pendingScrollOffset;
+        } else if (this.anchorPosition != RecyclerView.NO_POSITION) {
+            state.anchorPosition = this.anchorPosition;
+            state.anchorOffset = this.anchorOffset;
+        } else {
+            final int line = findFirstVisibleLine();
+            if (line >= 0) {
+                state.anchorPosition = this.lineIndex.getLineStartPosition(line);
+                state.anchorOffset = this.lineIndex.getLineStartThickness(line) - this.scrollOffset;
+            }
+        }
+
+        // uniform lines are computed again from the first item
+        final int anchorLine = this.lineIndex.isUniform() ? -1 : this.lineIndex.findLineByPosition(state.anchorPosition);
+        int lineCount = anchorLine < 0 ? 0 : Math.min(this.lineIndex.getLineCount(), anchorLine + SAVED_LINES_AFTER_ANCHOR);
+        if (lineCount > MAX_SAVED_LINES) {
+            lineCount = 0;
+        }
+
+        state.lineEndPositions = new int[lineCount];
+        state.lineThicknesses = new int[lineCount];
+        state.fullLinePositions = new int[lineCount];
+        int fullLineCount = 0;
+        for (int line = 0; line < lineCount; line++) {
+            if (this.lineIndex.isLineEstimated(line)) {
+                lineCount = line;
+                break;
+            }
+            state.lineEndPositions[line] = this.lineIndex.getLineEndPosition(line);
+            state.lineThicknesses[line] = this.lineIndex.getLineThickness(line);
+            if (this.lineIndex.isFullLine(line)) {
+                state.fullLinePositions[fullLineCount++] = this.lineIndex.getLineStartPosition(line);
+            }
+        }
+        state.lineEndPositions = Arrays.copyOf(state.lineEndPositions, lineCount);
+        state.lineThicknesses = Arrays.copyOf(state.lineThicknesses, lineCount);
+        state.fullLinePositions = Arrays.copyOf(state.fullLinePositions, fullLineCount);
+        return state;
+    }
+
+    @Override
+    public void onRestoreInstanceState(Parcelable state) {
+        if (state instanceof SavedState) {
+            this.pendingSavedState = (SavedState) state;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Lines saved with the state are used if nothing they depend on has changed, so only the lines
+     * around the anchor are bound after a restore.
+     */
+    private void restoreLineIndex(int count) {
+        final SavedState state = this.pendingSavedState;
+        if (state == null) {
+            return;
+        }
+
+        this.pendingSavedState = null;
+        if (this.lineIndex.isEmpty() && state.maxLength == this.config.getMaxLength() && state.itemCount == count) {
+            this.lineIndex.setLines(state.lineEndPositions, state.lineThicknesses, state.fullLinePositions);
+            if (this.config.getMaxLines() > 0 && this.lineIndex.getLineCount() > this.config.getMaxLines()) {
+                this.lineIndex.truncate(this.config.getMaxLines());
+            }
+        }
+    }
+
+    @Override
+    public boolean canScrollVertically() {
+        return this.config.getOrientation() == CommonLogic.HORIZONTAL;
+    }
+
+    @Override
+    public int scrollVerticallyBy(int dy, RecyclerView.Recycler recycler, RecyclerView.State state) {
+        return scrollBy(dy, recycler, state);
+    }
+
+    @Override
+    public boolean canScrollHorizontally() {
+        return this.config.getOrientation() == CommonLogic.VERTICAL;
+    }
+
+    @Override
+    public int scrollHorizontallyBy(int dx, RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (isThicknessMirrored()) {
+            return -scrollBy(-dx, recycler, state);
+        }
+        return scrollBy(dx, recycler, state);
+    }
+
+    @Override
+    public int computeVerticalScrollOffset(RecyclerView.State state) {
+        return computeScrollOffset(state);
+    }
+
+    @Override
+    public int computeVerticalScrollExtent(RecyclerView.State state) {
+        return computeScrollExtent();
+    }
+
+    @Override
+    public int computeVerticalScrollRange(RecyclerView.State state) {
+        return computeScrollRange(state);
+    }
+
+    @Override
+    public int computeHorizontalScrollOffset(RecyclerView.State state) {
+        return computeScrollOffset(state);
+    }
+
+    @Override
+    public int computeHorizontalScrollExtent(RecyclerView.State state) {
+        return computeScrollExtent();
+    }
+
+    @Override
+    public int computeHorizontalScrollRange(RecyclerView.State state) {
+        return computeScrollRange(state);
+    }
+
+    private int computeScrollOffset(RecyclerView.State state) {
+        if (getChildCount() == 0) {
+            return 0;
+        }
+        if (isThicknessMirrored()) {
+            return Math.max(0, computeScrollRange(state) - computeScrollExtent() - this.scrollOffset);
+        }
+        return this.scrollOffset;
+    }
+
+    private int computeScrollExtent() {
+        return getChildCount() == 0 ? 0 : this.config.getMaxThickness();
+    }
+
+    /**
+     * Thickness of the indexed lines plus the lines not measured yet, estimated from the average thickness
+     * of the indexed lines per item. The estimate gets closer as lines are indexed while scrolling.
+     */
+    private int computeScrollRange(RecyclerView.State state) {
+        if (getChildCount() == 0 || this.lineIndex.isEmpty()) {
+            return 0;
+        }
+
+        final int contentThickness = this.lineIndex.getContentThickness();
+        final int indexedCount = this.lineIndex.getItemCount();
+        long range = contentThickness;
+        if (canAddLine(state.getItemCount())) {
+            range += (long) contentThickness * (state.getItemCount() - indexedCount) / indexedCount;
+        }
+        return (int) Math.max(range, this.scrollOffset + this.config.getMaxThickness());
+    }
+
+    /**
+     * Columns of a vertical right to left layout go from the right edge to the left one.
+     */
+    private boolean isThicknessMirrored() {
+        return this.config.getOrientation() == CommonLogic.VERTICAL && this.config.getLayoutDirection() == View.LAYOUT_DIRECTION_RTL;
+    }
+
+    /**
+     * Scrolls along the line thickness axis, lays out lines which come into the window at the leading edge
+     * and recycles lines which left it at the trailing edge.
+     *
+     * @return distance actually scrolled
+     */
+    private int scrollBy(int delta, RecyclerView.Recycler recycler, RecyclerView.State state) {
+        if (getChildCount() == 0 || delta == 0) {
+            return 0;
+        }
+
+        final int count = state.getItemCount();
+        unpinHeader();
+        if (this.firstAttachedLine < 0 && !reattachLines(recycler, count)) {
+            // the requested layout pass lays the children out again
+            recyclePendingView(recycler);
+            pinHeader(recycler);
+            return 0;
+        }
+        if (delta > 0) {
+            fill(recycler, count, this.extraLayoutSpace, delta + this.extraLayoutSpace);
+            if (!canAddLine(count) && this.lastAttachedLine == this.lineIndex.getLineCount() - 1) {
+                int maxScrollOffset = this.lineIndex.getLineEndThickness(this.lastAttachedLine) - this.config.getMaxThickness();
+                delta = Math.max(0, Math.min(delta, maxScrollOffset - this.scrollOffset));
+            }
+        } else {
+            delta = Math.max(delta, -this.scrollOffset);
+        }
+
+        offsetChildren(-delta);
+        this.scrollOffset += delta;
+        fill(recycler, count);
+        recyclePendingView(recycler);
+        pinHeader(recycler);
+        return delta;
+    }
+
+    /**
+     * Indexes the lines before the children again after updates of items before them, which RecyclerView applies
+     * without a layout pass, dropped the attached lines. The lines kept aside by the index are attached back once
+     * a line ends at their start, so the children stay where they are and only the scroll offset follows the anchor.
+     *
+     * @return false if the children are not the items of whole indexed lines any more
+     */
+    private boolean reattachLines(RecyclerView.Recycler recycler, int count) {
+        final int firstPosition = getPosition(getChildAt(0));
+        final int endPosition = getPosition(getChildAt(getChildCount() - 1)) + 1;
+        applyLineMode(recycler, count);
+        // the attached items are not bound a second time to index their lines
+        while (this.lineIndex.getItemCount() < firstPosition && canAddLine(count)) {
+            indexLine(recycler, count);
+        }
+
+        final int firstLine = this.lineIndex.findLineByPosition(firstPosition);
+        final int lastLine = this.lineIndex.findLineByPosition(endPosition - 1);
+        final int anchorLine = this.lineIndex.findLineByPosition(this.anchorPosition);
+        if (firstLine < 0 || lastLine < 0 || anchorLine < firstLine || anchorLine > lastLine
+                || this.lineIndex.getLineStartPosition(firstLine) != firstPosition
+                || this.lineIndex.getLineEndPosition(lastLine) != endPosition
+                || this.lineIndex.getLineStartPosition(anchorLine) != this.anchorPosition) {
+            return false;
+        }
+
+        this.firstAttachedLine = firstLine;
+        this.lastAttachedLine = lastLine;
+        this.scrollOffset = this.lineIndex.getLineStartThickness(anchorLine) - this.anchorOffset;
+        this.anchorPosition = RecyclerView.NO_POSITION;
+        return true;
+    }
+
+    /**
+     * Puts the pinned header out of the way before lines are laid out or recycled, so the children are only the line items
+     * in adapter order. The view of an attached header line moves back to its line, an extra header view is detached
+     * until {@link #pinHeader} attaches it again or {@link #releasePinnedHeader} recycles it.
+     */
+    private void unpinHeader() {
+        if (this.pinnedHeader == null) {
+            return;
+        }
+
+        this.pinnedHeaderIndex = -1;
+        if (this.pinnedHeaderInLine) {
+            moveAlongThickness(this.pinnedHeader, -this.pinnedHeaderShift);
+            this.pinnedHeader = null;
+        } else {
+            detachView(this.pinnedHeader);
+        }
+    }
+
+    /**
+     * @return position of the header to pin at the start of the visible area or -1 if none is needed
+     */
+    private int findPinnedHeaderPosition() {
+        final int firstLine = this.stickyHeaders ? findFirstVisibleLine() : -1;
+        final int headerPosition = firstLine < 0 ? -1 : this.lineIndex.findFullLinePosition(this.lineIndex.getLineStartPosition(firstLine));
+        final int headerLine = this.lineIndex.findLineByPosition(headerPosition);
+        if (headerLine < 0 || this.lineIndex.getLineStartThickness(headerLine) >= this.scrollOffset) {
+            // no header or it is in its place
+            return -1;
+        }
+        return headerPosition;
+    }
+
+    /**
+     * Pins the header of the first visible line at the start of the visible area. If its line is attached, its view
+     * is moved there without changing the child order, otherwise the header is laid out as one extra view after the line items,
+     * which is kept while the header stays the same. Called after {@link #unpinHeader()}.
+     */
+    private void pinHeader(RecyclerView.Recycler recycler) {
+        final int headerPosition = findPinnedHeaderPosition();
+        if (headerPosition < 0) {
+            releasePinnedHeader(recycler);
+            return;
+        }
+
+        final int headerLine = this.lineIndex.findLineByPosition(headerPosition);
+        int start = 0;
+        final int nextPosition = this.lineIndex.findNextFullLinePosition(headerPosition);
+        if (nextPosition >= 0) {
+            final int nextStart = this.lineIndex.getLineStartThickness(this.lineIndex.findLineByPosition(nextPosition)) - this.scrollOffset;
+            start = Math.min(0, nextStart - this.lineIndex.getLineThickness(headerLine));
+        }
+
+        final boolean inLine = headerLine >= this.firstAttachedLine && headerLine <= this.lastAttachedLine;
+        final View header;
+        final int currentStart;
+        if (inLine) {
+            releasePinnedHeader(recycler);
+            header = getChildAt(headerPosition - this.lineIndex.getLineStartPosition(this.firstAttachedLine));
+            currentStart = this.lineIndex.getLineStartThickness(headerLine) - this.scrollOffset;
+        } else if (this.pinnedHeader != null && this.pinnedHeaderPosition == headerPosition) {
+            header = this.pinnedHeader;
+            currentStart = this.pinnedHeaderStart;
+            attachView(header);
+        } else {
+            releasePinnedHeader(recycler);
+            layoutItems(recycler, headerPosition, headerPosition + 1, false, false, start);
+            header = getChildAt(getChildCount() - 1);
+            currentStart = start;
+        }
+
+        moveAlongThickness(header, start - currentStart);
+        this.pinnedHeader = header;
+        this.pinnedHeaderPosition = headerPosition;
+        this.pinnedHeaderStart = start;
+        this.pinnedHeaderShift = start - currentStart;
+        this.pinnedHeaderInLine = inLine;
+    }
+
+    /**
+     * Recycles the detached extra header view.
+     */
+    private void releasePinnedHeader(RecyclerView.Recycler recycler) {
+        if (this.pinnedHeader != null) {
+            removeDetachedView(this.pinnedHeader);
+            recycler.recycleView(this.pinnedHeader);
+            this.pinnedHeader = null;
+        }
+    }
+
+    /**
+     * @return index of the pinned header among all children of the RecyclerView, including the animated ones, -1 if no header is pinned
+     */
+    private int findPinnedHeaderIndex(int childCount) {
+        if (this.pinnedHeader == null || this.recyclerView == null) {
+            return -1;
+        }
+        // the header moves when disappearing views are added or removed
+        if (this.pinnedHeaderIndex < 0 || this.pinnedHeaderIndex >= childCount || this.recyclerView.getChildAt(this.pinnedHeaderIndex) != this.pinnedHeader) {
+            this.pinnedHeaderIndex = this.recyclerView.indexOfChild(this.pinnedHeader);
+        }
+        return this.pinnedHeaderIndex;
+    }
+
+    private void offsetChildren(int offset) {
+        if (this.config.getOrientation() == CommonLogic.HORIZONTAL) {
+            offsetChildrenVertical(offset);
+        } else if (isThicknessMirrored()) {
+            offsetChildrenHorizontal(-offset);
+        } else {
+            offsetChildrenHorizontal(offset);
+        }
+    }
+
+    private void fill(RecyclerView.Recycler recycler, int count) {
+        fill(recycler, count, this.extraLayoutSpace, this.extraLayoutSpace);
+    }
+
+    /**
+     * Lays out lines intersecting the window which are not attached yet and recycles attached lines
+     * which are outside of it. At least one line stays attached. The window follows the scroll offset,
+     * which moves when estimated lines before the attached ones are measured.
+     *
+     * @param spaceBefore window extent before the visible area
+     * @param spaceAfter  window extent after the visible area
+     */
+    private void fill(RecyclerView.Recycler recycler, int count, int spaceBefore, int spaceAfter) {
+        if (this.firstAttachedLine < 0) {
+            return;
+        }
+
+        while (this.lineIndex.getLineEndThickness(this.lastAttachedLine) < this.scrollOffset + this.config.getMaxThickness() + spaceAfter && canAddLineAfter(this.lastAttachedLine, count)) {
+            layoutLine(recycler, this.lastAttachedLine + 1, count, false);
+        }
+
+        while (this.firstAttachedLine > 0 && this.lineIndex.getLineStartThickness(this.firstAttachedLine) > this.scrollOffset - spaceBefore) {
+            layoutLine(recycler, this.firstAttachedLine - 1, count, true);
+        }
+
+        final int windowStart = this.scrollOffset - spaceBefore;
+        final int windowEnd = this.scrollOffset + this.config.getMaxThickness() + spaceAfter;
+        while (this.firstAttachedLine < this.lastAttachedLine && this.lineIndex.getLineEndThickness(this.firstAttachedLine) <= windowStart) {
+            final int lineItemCount = this.lineIndex.getLineEndPosition(this.firstAttachedLine) - this.lineIndex.getLineStartPosition(this.firstAttachedLine);
+            for (int i = 0; i < lineItemCount; i++) {
+                removeAndRecycleViewAt(0, recycler);
+            }
+            this.firstAttachedLine++;
+        }
+
+        while (this.lastAttachedLine > this.firstAttachedLine && this.lineIndex.getLineStartThickness(this.lastAttachedLine) >= windowEnd) {
+            final int lineItemCount = this.lineIndex.getLineEndPosition(this.lastAttachedLine) - this.lineIndex.getLineStartPosition(this.lastAttachedLine);
+            for (int i = 0; i < lineItemCount; i++) {
+                removeAndRecycleViewAt(getChildCount() - 1, recycler);
+            }
+            this.lastAttachedLine--;
+        }
+    }
+
+    private int findFirstVisibleLine() {
+        if (this.firstAttachedLine < 0 || getChildCount() == 0) {
+            return -1;
+        }
+
+        final int line = this.lineIndex.findLineByThickness(this.scrollOffset);
+        return Math.min(Math.max(line, this.firstAttachedLine), this.lastAttachedLine);
+    }
+
+    private int findLastVisibleLine() {
+        if (this.firstAttachedLine < 0 || getChildCount() == 0) {
+            return -1;
+        }
+
+        final int line = this.lineIndex.findLineByThickness(this.scrollOffset + this.config.getMaxThickness() - 1);
+        return Math.min(Math.max(line, this.firstAttachedLine), this.lastAttachedLine);
+    }
+
+    /**
+     * @return adapter position of the first item of the first visible line or {@link RecyclerView#NO_POSITION}
+     */
+    public int findFirstVisibleItemPosition() {
+        final int line = findFirstVisibleLine();
+        return line < 0 ? RecyclerView.NO_POSITION : this.lineIndex.getLineStartPosition(line);
+    }
+
+    /**
+     * @return adapter position of the last item of the last visible line or {@link RecyclerView#NO_POSITION}
+     */
+    public int findLastVisibleItemPosition() {
+        final int line = findLastVisibleLine();
+        return line < 0 ? RecyclerView.NO_POSITION : this.lineIndex.getLineEndPosition(line) - 1;
+    }
+
+    @Override
+    public View findViewByPosition(int position) {
+        final int childCount = getChildCount();
+        if (childCount == 0) {
+            return null;
+        }
+
+        // children are attached in adapter order
+        final int index = position - getPosition(getChildAt(0));
+        if (index >= 0 && index < childCount) {
+            final View child = getChildAt(index);
+            if (getPosition(child) == position) {
+                return child;
+            }
+        }
+        return super.findViewByPosition(position);
+    }
+
+    @Override
+    public void scrollToPosition(int position) {
+        scrollToPositionWithOffset(position, 0);
+    }
+
+    /**
+     * Scrolls to the line of the item, the start of the line is placed at the given distance from the start of the visible area.
+     * Lines before it which are not in the line index yet are built from the {@link ItemSizeProvider} or from estimated sizes,
+     * only the items of the target line and of the lines in the window are bound. With max lines or with size estimation
+     * turned off, the items before the target which have no known size are bound and measured one by one.
+     *
+     * @param offset distance along the line thickness axis
+     */
+    public void scrollToPositionWithOffset(int position, int offset) {
+        this.pendingScrollPosition = position;
+        this.pendingScrollOffset = offset;
+        requestLayout();
+    }
+
+    @Override
+    public void smoothScrollToPosition(RecyclerView recyclerView, RecyclerView.State state, int position) {
+        LinearSmoothScroller scroller = new LinearSmoothScroller(recyclerView.getContext());
+        scroller.setTargetPosition(position);
+        startSmoothScroll(scroller);
+    }
+
+    /**
+     * Lines are in adapter order, so the direction is known from the attached lines without binding any item.
+     */
+    @Override
+    public PointF computeScrollVectorForPosition(int targetPosition) {
+        if (getChildCount() == 0) {
+            return null;
+        }
+
+        final int direction = targetPosition < getPosition(getChildAt(0)) ? -1 : 1;
+        if (this.config.getOrientation() == CommonLogic.HORIZONTAL) {
+            return new PointF(0, direction);
+        }
+        return new PointF(isThicknessMirrored() ? -direction : direction, 0);
+    }
+
+    /**
+     * Gives the items of the lines which the next scroll by the same distance brings into the window
+     * to the GapWorker, so they are bound between frames. Lines not indexed yet are unknown,
+     * only the first item after the indexed ones is prefetched then.
+     */
+    @Override
+    public void collectAdjacentPrefetchPositions(int dx, int dy, RecyclerView.State state, LayoutPrefetchRegistry layoutPrefetchRegistry) {
+        int delta = this.config.getOrientation() == CommonLogic.HORIZONTAL ? dy : dx;
+        if (isThicknessMirrored()) {
+            delta = -delta;
+        }
+        if (getChildCount() == 0 || delta == 0 || this.firstAttachedLine < 0) {
+            return;
+        }
+
+        if (delta > 0) {
+            final int windowEnd = this.scrollOffset + this.config.getMaxThickness() + this.extraLayoutSpace;
+            int line = this.lastAttachedLine + 1;
+            while (line < this.lineIndex.getLineCount() && getLineStartThickness(line) < windowEnd + delta) {
+                addLinePositions(line, Math.max(0, getLineStartThickness(line) - windowEnd), layoutPrefetchRegistry);
+                line++;
+            }
+            if (line == this.lineIndex.getLineCount() && canAddLine(state.getItemCount()) && getLineStartThickness(line) < windowEnd + delta) {
+                layoutPrefetchRegistry.addPosition(this.lineIndex.getItemCount(), Math.max(0, getLineStartThickness(line) - windowEnd));
+            }
+        } else {
+            final int windowStart = this.scrollOffset - this.extraLayoutSpace;
+            int line = this.firstAttachedLine - 1;
+            while (line >= 0 && this.lineIndex.getLineEndThickness(line) > windowStart + delta) {
+                addLinePositions(line, Math.max(0, windowStart - this.lineIndex.getLineEndThickness(line)), layoutPrefetchRegistry);
+                line--;
+            }
+        }
+    }
+
+    private void addLinePositions(int line, int distance, LayoutPrefetchRegistry layoutPrefetchRegistry) {
+        final int endPosition = this.lineIndex.getLineEndPosition(line);
+        for (int position = this.lineIndex.getLineStartPosition(line); position < endPosition; position++) {
+            layoutPrefetchRegistry.addPosition(position, distance);
+        }
+    }
+
+    @Override
+    public void collectInitialPrefetchPositions(int adapterItemCount, LayoutPrefetchRegistry layoutPrefetchRegistry) {
+        int anchorPosition = this.pendingScrollPosition;
+        if (anchorPosition == RecyclerView.NO_POSITION) {
+            anchorPosition = Math.max(0, findFirstVisibleItemPosition());
+        }
+
+        final int endPosition = Math.min(adapterItemCount, anchorPosition + this.initialPrefetchItemCount);
+        for (int position = anchorPosition; position < endPosition; position++) {
+            layoutPrefetchRegistry.addPosition(position, 0);
+        }
+    }
+
+    private int getLineStartThickness(int line) {
+        if (line == this.lineIndex.getLineCount()) {
+            return this.lineIndex.getContentThickness();
+        }
+        return this.lineIndex.getLineStartThickness(line);
+    }
+
+    private boolean canAddLine(int count) {
+        if (this.config.getMaxLines() > 0 && this.lineIndex.getLineCount() >= this.config.getMaxLines()) {
+            return false;
+        }
+        return this.lineIndex.getItemCount() < count;
+    }
+
+    private boolean canAddLineAfter(int line, int count) {
+        return line + 1 < this.lineIndex.getLineCount() || canAddLine(count);
+    }
+
+    /**
+     * Measures the items of the next not yet known line and gives their views back to the recycler.
+     * Items with cached or estimated sizes are not bound at all.
+     */
+    private void indexLine(RecyclerView.Recycler recycler, int count) {
+        final int startPosition = this.lineIndex.getItemCount();
+        final boolean allowEstimate = canEstimateSizes();
+        LineDefinition line = this.pool.obtainLine();
+        boolean estimated = false;
+        int position = startPosition;
+        while (position < count) {
+            ViewDefinition view = obtainViewDefinition(recycler, position, false, allowEstimate);
+            if (position > startPosition && (view.isNewLine() || !line.canFit(view))) {
+                this.pendingItem = view;
+                this.pendingPosition = position;
+                break;
+            }
+
+            line.addView(view);
+            estimated |= view.isEstimated();
+            if (view.getView() != null) {
+                recycler.recycleView((View) view.getView());
+            }
+            position++;
+        }
+
+        addLine(position, line.getLineThickness(), estimated, line.isFullLine());
+        releaseLine(line);
+    }
+
+    /**
+     * Measures the items of a line built from estimated sizes and puts the measured lines in its place.
+     * Other line breaks do not change. If the line is before the attached ones, the scroll offset moves
+     * by the thickness difference, so the attached lines stay where they are.
+     *
+     * @param keepViews the line is laid out next, its bound views are kept for {@link #layoutItems} instead of being recycled
+     */
+    private void refineLine(RecyclerView.Recycler recycler, int lineNumber, boolean keepViews) {
+        final int startPosition = this.lineIndex.getLineStartPosition(lineNumber);
+        final int endPosition = this.lineIndex.getLineEndPosition(lineNumber);
+        final boolean beforeAttached = this.firstAttachedLine >= 0 && lineNumber < this.firstAttachedLine;
+        final int attachedStartThickness = beforeAttached ? this.lineIndex.getLineStartThickness(this.firstAttachedLine) : 0;
+
+        int count = 0;
+        LineDefinition line = this.pool.obtainLine();
+        for (int position = startPosition; position < endPosition; position++) {
+            ViewDefinition view = obtainViewDefinition(recycler, position, false, false);
+            if (!line.getViews().isEmpty() && (view.isNewLine() || !line.canFit(view))) {
+                count = addRefinedLine(count, position, line);
+                releaseLine(line);
+                line = this.pool.obtainLine();
+            }
+
+            line.addView(view);
+            if (view.getView() != null && keepViews) {
+                this.measuredViews.put(position, (View) view.getView());
+            } else if (view.getView() != null) {
+                recycler.recycleView((View) view.getView());
+            }
+        }
+        count = addRefinedLine(count, endPosition, line);
+        releaseLine(line);
+        this.lineIndex.replaceLine(lineNumber, this.refinedLineEnds, this.refinedLineThicknesses, this.refinedFullLines, count);
+
+        if (beforeAttached) {
+            this.firstAttachedLine += count - 1;
+            this.lastAttachedLine += count - 1;
+            this.scrollOffset += this.lineIndex.getLineStartThickness(this.firstAttachedLine) - attachedStartThickness;
+        }
+    }
+
+    /**
+     * @return view bound and measured for the position by {@link #refineLine} in this pass, null if there is none
+     */
+    private View takeMeasuredView(int position) {
+        final View view = this.measuredViews.get(position);
+        if (view != null) {
+            this.measuredViews.remove(position);
+        }
+        return view;
+    }
+
+    private void releaseLine(LineDefinition line) {
+        final List<ViewDefinition> lineViews = line.getViews();
+        final int viewCount = lineViews.size();
+        for (int i = 0; i < viewCount; i++) {
+            this.pool.release(lineViews.get(i));
+        }
+        this.pool.release(line);
+    }
+
+    private int addRefinedLine(int count, int endPosition, LineDefinition line) {
+        if (count == this.refinedLineEnds.length) {
+            this.refinedLineEnds = Arrays.copyOf(this.refinedLineEnds, count * 2);
+            this.refinedLineThicknesses = Arrays.copyOf(this.refinedLineThicknesses, count * 2);
+            this.refinedFullLines = Arrays.copyOf(this.refinedFullLines, count * 2);
+        }
+        this.refinedLineEnds[count] = endPosition;
+        this.refinedLineThicknesses[count] = line.getLineThickness();
+        this.refinedFullLines[count] = line.isFullLine();
+        return count + 1;
+    }
+
+    private void addLine(int endPosition, int thickness, boolean estimated, boolean fullLine) {
+        this.lineIndex.addLine(endPosition, thickness, estimated, fullLine);
+        // lines attached back after adapter updates could go beyond the limit
+        if (this.config.getMaxLines() > 0 && this.lineIndex.getLineCount() > this.config.getMaxLines()) {
+            this.lineIndex.truncate(this.config.getMaxLines());
+        }
+    }
+
+    /**
+     * Binds, measures and lays out the items of the given line. Lines which are not known yet
+     * are broken here and added to the line index.
+     */
+    private void layoutLine(RecyclerView.Recycler recycler, int lineNumber, int count, boolean atFront) {
+        if (lineNumber < this.lineIndex.getLineCount() && this.lineIndex.isLineEstimated(lineNumber)) {
+            final int lineCount = this.lineIndex.getLineCount();
+            refineLine(recycler, lineNumber, true);
+            if (atFront) {
+                // the last of the measured lines is next to the attached ones
+                lineNumber += this.lineIndex.getLineCount() - lineCount;
+            }
+        }
+
+        final boolean known = lineNumber < this.lineIndex.getLineCount();
+        final int startPosition = known ? this.lineIndex.getLineStartPosition(lineNumber) : this.lineIndex.getItemCount();
+        final int endPosition = known ? this.lineIndex.getLineEndPosition(lineNumber) : count;
+        final int lineStartThickness = getLineStartThickness(lineNumber) - this.scrollOffset;
+
+        final int position = layoutItems(recycler, startPosition, endPosition, !known, atFront, lineStartThickness);
+        if (!known) {
+            addLine(position, this.lastLineThickness, false, this.lastLineFullLine);
+        }
+
+        if (this.firstAttachedLine < 0) {
+            this.firstAttachedLine = lineNumber;
+            this.lastAttachedLine = lineNumber;
+        } else if (atFront) {
+            this.firstAttachedLine = lineNumber;
+        } else {
+            this.lastAttachedLine = lineNumber;
+        }
+    }
+
+    /**
+     * Binds, measures and lays out items from startPosition as one line.
+     *
+     * @param breakLine          stop at the first item which does not fit into the line, otherwise all items up to endPosition are added
+     * @param lineStartThickness line start relative to the start of the visible area
+     * @return position after the last item of the line
+     */
+    private int layoutItems(RecyclerView.Recycler recycler, int startPosition, int endPosition, boolean breakLine, boolean atFront, int lineStartThickness) {
+        // definitions of the previous line are not used after it was laid out
+        this.pool.releaseAll(views, lines);
+        LineDefinition line = this.pool.obtainLine();
+        lines.add(line);
+
+        int position = startPosition;
+        while (position < endPosition) {
+            ViewDefinition view = obtainViewDefinition(recycler, position, true, false);
+            View child = (View) view.getView();
+
+            if (breakLine && !views.isEmpty() && (view.isNewLine() || !line.canFit(view))) {
+                this.pendingItem = view;
+                this.pendingPosition = position;
+                break;
+            }
+
+            if (atFront) {
+                addView(child, views.size());
+            } else {
+                addView(child);
+            }
+            views.add(view);
+            line.addView(view);
+            position++;
+        }
+        if (this.config.getOrientation() == CommonLogic.HORIZONTAL && this.config.getLayoutDirection() == View.LAYOUT_DIRECTION_RTL) {
+            line.reverseViews();
+        }
+
+        if (this.config.isUniformLineThickness() && !this.lineIndex.isEmpty()) {
+            line.setThickness(this.lineIndex.getLineThickness(0));
+        }
         CommonLogic.calculateLinesAndChildPosition(lines);
+        CommonLogic.applyGravityToLines(lines, this.config.getMaxLength(), line.getLineThickness(), this.config);
+        if (isThicknessMirrored()) {
+            line.setLineStartThickness(this.config.getMaxThickness() - lineStartThickness - line.getLineThickness());
+        } else {
+            line.setLineStartThickness(lineStartThickness);
+        }
+        this.lastLineThickness = line.getLineThickness();
+        this.lastLineFullLine = line.isFullLine();
+
+        applyPositionsToViews(line);
+        return position;
+    }
+
+    /**
+     * Size of the item with its view if needView is set. Items which are not laid out again since they were measured
+     * take their size from the cache, so scrolling back over them does not measure them again.
+     *
+     * @param allowEstimate items without known size get the estimated size of their view type instead of being measured
+     */
+    private ViewDefinition obtainViewDefinition(RecyclerView.Recycler recycler, int position, boolean needView, boolean allowEstimate) {
+        if (this.pendingItem != null) {
+            final ViewDefinition pending = this.pendingItem;
+            this.pendingItem = null;
+            if (this.pendingPosition == position && (pending.getView() != null || !needView) && (!pending.isEstimated() || allowEstimate)) {
+                return pending;
+            }
+            if (pending.getView() != null) {
+                recycler.recycleView((View) pending.getView());
+            }
+            this.pool.release(pending);
+        }
+
+        // pre-layout positions do not match the adapter
+        final long key = this.preLayout ? 0 : getItemKey(position);
+        if (!needView) {
+            final ViewDefinition known = this.pool.obtainView(null);
+            if (readItemSize(position, key, true, known)) {
+                CommonLogic.applyFullLineLength(known, this.config);
+                return known;
+            }
+            if (allowEstimate && readEstimatedSize(position, known)) {
+                return known;
+            }
+            this.pool.release(known);
+        }
 
-        int contentLength = 0;
-        final int linesCount = lines.size();
-        for (int i = 0; i < linesCount; i++) {
-            LineDefinition l = lines.get(i);
-            contentLength = Math.max(contentLength, l.getLineLength());
+        View child = needView ? takeMeasuredView(position) : null;
+        final boolean measured = child != null;
+        if (child == null) {
+            child = recycler.getViewForPosition(position);
         }
+        final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+        ViewDefinition view = this.pool.obtainView(child);
+        view.setNewLine(lp.isNewLine());
+        view.setFullLine(lp.isFullLine());
+        view.setGravity(lp.getGravity());
+        view.setResolvedGravity(lp.getResolvedGravity(this.config));
+        view.setWeight(lp.getWeight());
+        view.setMargins(lp.leftMargin, lp.topMargin, lp.rightMargin, lp.bottomMargin);
+        if (readItemSize(position, key, measured || !child.isLayoutRequested(), view)) {
+            // the view still needs a measure pass before its layout, its size is the given one anyway
+            if (child.isLayoutRequested() && !measured) {
+                measureChildWithMargins(child, 0, 0);
+            }
+        } else {
+            measureChildWithMargins(child, 0, 0);
+            view.setWidth(getDecoratedMeasuredWidth(child));
+            view.setHeight(getDecoratedMeasuredHeight(child));
+            if (!this.preLayout) {
+                this.sizeCache.put(key, view);
+                if (this.sizeEstimation) {
+                    this.sizeEstimates.put(getItemViewType(child), view);
+                }
+            }
+        }
+        // sizes are cached before the stretch, the line length can change
+        CommonLogic.applyFullLineLength(view, this.config);
+        return view;
+    }
+
+    private boolean readEstimatedSize(int position, ViewDefinition view) {
+        if (this.adapter == null || this.preLayout || !this.sizeEstimates.get(this.adapter.getItemViewType(position), view)) {
+            return false;
+        }
+        view.setNewLine(false);
+        view.setFullLine(false);
+        view.setEstimated(true);
+        return true;
+    }
 
-        LineDefinition currentLine = lines.get(lines.size() - 1);
-        int contentThickness = currentLine.getLineStartThickness() + currentLine.getLineThickness();
-        int realControlLength = CommonLogic.findSize(this.config.getLengthMode(), this.config.getMaxLength(), contentLength);
-        int realControlThickness = CommonLogic.findSize(this.config.getThicknessMode(), this.config.getMaxThickness(), contentThickness);
+    /**
+     * Size of the item known without measuring it: the uniform one, the one from the {@link ItemSizeProvider}
+     * or the cached one if useCache is set.
+     */
+    private boolean readItemSize(int position, long key, boolean useCache, ViewDefinition view) {
+        if (this.config.isUniformItemSize() && this.uniformItem != null) {
+            view.setWidth(this.uniformItem.getWidth());
+            view.setHeight(this.uniformItem.getHeight());
+            view.setMargins(this.uniformItem.getLeftMargin(), this.uniformItem.getTopMargin(), this.uniformItem.getRightMargin(), this.uniformItem.getBottomMargin());
+            view.setFullLine(false);
+            return true;
+        }
+        if (this.preLayout) {
+            return false;
+        }
+        if (this.itemSizeProvider != null && this.itemSizeProvider.getItemSize(position, view)) {
+            return true;
+        }
+        return useCache && this.sizeCache.get(key, view);
+    }
+
+    /**
+     * Items have the size of the first one, so the lines are computed instead of measured.
+     * New line and full line flags of the items are not taken into account.
+     */
+    private void applyUniformLines(RecyclerView.Recycler recycler, int count) {
+        if (this.uniformItem == null) {
+            final ViewDefinition first = obtainViewDefinition(recycler, 0, false, false);
+            if (first.getView() != null) {
+                recycler.recycleView((View) first.getView());
+            }
+            this.uniformItem = new ViewDefinition(this.config, null);
+            this.uniformItem.setWidth(first.getWidth());
+            this.uniformItem.setHeight(first.getHeight());
+            this.uniformItem.setMargins(first.getLeftMargin(), first.getTopMargin(), first.getRightMargin(), first.getBottomMargin());
+            this.pool.release(first);
+        }
 
-        CommonLogic.applyGravityToLines(lines, realControlLength, realControlThickness, config);
+        final int itemsPerLine = CommonLogic.getUniformItemsPerLine(this.config, this.uniformItem.getLength() + this.uniformItem.getSpacingLength());
+        this.lineIndex.setUniformLines(itemsPerLine, this.uniformItem.getThickness() + this.uniformItem.getSpacingThickness(), count, this.config.getMaxLines());
+    }
 
-        for (int i = 0; i < linesCount; i++) {
-            LineDefinition line = lines.get(i);
-            applyPositionsToViews(line);
+    private void recyclePendingView(RecyclerView.Recycler recycler) {
+        // the first item of the line after the window was measured to find the line break
+        if (this.pendingItem != null) {
+            if (this.pendingItem.getView() != null) {
+                recycler.recycleView((View) this.pendingItem.getView());
+            }
+            this.pool.release(this.pendingItem);
+            this.pendingItem = null;
+        }
+        // measured lines which were not laid out
+        final int measuredCount = this.measuredViews.size();
+        for (int i = 0; i < measuredCount; i++) {
+            recycler.recycleView(this.measuredViews.valueAt(i));
         }
+        this.measuredViews.clear();
     }
 
     private void applyPositionsToViews(LineDefinition line) {
         final List<ViewDefinition> childViews = line.getViews();
         final int childCount = childViews.size();
+        final boolean horizontal = this.config.getOrientation() == CommonLogic.HORIZONTAL;
+        final int lineLeft = this.getPaddingLeft() + (horizontal ? line.getLineStartLength() : line.getLineStartThickness());
+        final int lineTop = this.getPaddingTop() + (horizontal ? line.getLineStartThickness() : line.getLineStartLength());
         for (int i = 0; i < childCount; i++) {
             final ViewDefinition child = childViews.get(i);
-            final View view = child.getView();
-            measureChildWithMargins(view, child.getWidth(), child.getHeight());
+            final View view = (View) child.getView();
+            final int decoratedWidth = getDecoratedMeasuredWidth(view);
+            final int decoratedHeight = getDecoratedMeasuredHeight(view);
+            if (decoratedWidth != child.getWidth() || decoratedHeight != child.getHeight()) {
+                view.measure(
+                        View.MeasureSpec.makeMeasureSpec(child.getWidth() - decoratedWidth + view.getMeasuredWidth(), View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(child.getHeight() - decoratedHeight + view.getMeasuredHeight(), View.MeasureSpec.EXACTLY)
+                );
+            }
+
+            final LayoutParams lp = (LayoutParams) view.getLayoutParams();
+            final int left;
+            final int top;
+            if (horizontal) {
+                left = lineLeft + child.getInlineStartLength() + lp.leftMargin;
+                top = lineTop + child.getInlineStartThickness() + lp.topMargin;
+            } else {
+                left = lineLeft + child.getInlineStartThickness() + lp.leftMargin;
+                top = lineTop + child.getInlineStartLength() + lp.topMargin;
+            }
+            layoutDecorated(view, left, top, left + child.getWidth(), top + child.getHeight());
+        }
+    }
+
+    public static class SavedState implements Parcelable {
+        private int anchorPosition;
+        private int anchorOffset;
+        private int maxLength;
+        private int itemCount;
+        private int[] lineEndPositions;
+        private int[] lineThicknesses;
+        private int[] fullLinePositions;
+
+        public SavedState() {
+        }
+
+        public SavedState(SavedState other) {
+            this.anchorPosition = other.anchorPosition;
+            this.anchorOffset = other.anchorOffset;
+            this.maxLength = other.maxLength;
+            this.itemCount = other.itemCount;
+            this.lineEndPositions = other.lineEndPositions;
+            this.lineThicknesses = other.lineThicknesses;
+            this.fullLinePositions = other.fullLinePositions;
+        }
 
-            layoutDecorated(view,
-                    this.getPaddingLeft() + line.getLineStartLength() + child.getInlineStartLength(),
-                    this.getPaddingTop() + line.getLineStartThickness() + child.getInlineStartThickness(),
-                    this.getPaddingLeft() + line.getLineStartLength() + child.getInlineStartLength() + child.getWidth(),
-                    this.getPaddingTop() + line.getLineStartThickness() + child.getInlineStartThickness() + child.getHeight()
-            );
+        private SavedState(Parcel in) {
+            this.anchorPosition = in.readInt();
+            this.anchorOffset = in.readInt();
+            this.maxLength = in.readInt();
+            this.itemCount = in.readInt();
+            this.lineEndPositions = in.createIntArray();
+            this.lineThicknesses = in.createIntArray();
+            this.fullLinePositions = in.createIntArray();
         }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+            dest.writeInt(this.anchorPosition);
+            dest.writeInt(this.anchorOffset);
+            dest.writeInt(this.maxLength);
+            dest.writeInt(this.itemCount);
+            dest.writeIntArray(this.lineEndPositions);
+            dest.writeIntArray(this.lineThicknesses);
+            dest.writeIntArray(this.fullLinePositions);
+        }
+
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
     }
 
     public static class LayoutParams extends RecyclerView.LayoutParams {
@@ -137,8 +1746,10 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
         })
 
         private boolean newLine = false;
+        private boolean fullLine = false;
         private int gravity = Gravity.NO_GRAVITY;
         private float weight = -1.0f;
+        private final GravityCache gravityCache = new GravityCache();
 
         public LayoutParams(Context context, AttributeSet attributeSet) {
             super(context, attributeSet);
@@ -157,6 +1768,7 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
             TypedArray a = context.obtainStyledAttributes(attributeSet, R.styleable.FlowLayout_LayoutParams);
             try {
                 this.newLine = a.getBoolean(R.styleable.FlowLayout_LayoutParams_layout_newLine, false);
+                this.fullLine = a.getBoolean(R.styleable.FlowLayout_LayoutParams_layout_fullLine, false);
                 this.gravity = a.getInt(R.styleable.FlowLayout_LayoutParams_android_layout_gravity, Gravity.NO_GRAVITY);
                 this.weight = a.getFloat(R.styleable.FlowLayout_LayoutParams_layout_weight, -1.0f);
             } finally {
@@ -172,6 +1784,13 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
             this.gravity = gravity;
         }
 
+        /**
+         * @return gravity resolved for the config of the layout, computed again only after the gravity or the config changes
+         */
+        public int getResolvedGravity(ConfigDefinition config) {
+            return this.gravityCache.resolve(this.gravity, config);
+        }
+
         public float getWeight() {
             return weight;
         }
@@ -187,5 +1806,13 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
         public void setNewLine(boolean newLine) {
             this.newLine = newLine;
         }
+
+        public boolean isFullLine() {
+            return fullLine;
+        }
+
+        public void setFullLine(boolean fullLine) {
+            this.fullLine = fullLine;
+        }
     }
 }
\ No newline at end of file
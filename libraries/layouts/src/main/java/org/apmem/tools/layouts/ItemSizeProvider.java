@@ -0,0 +1,19 @@
+package org.apmem.tools.layouts;
+
+import org.apmem.tools.layouts.logic.ViewDefinition;
+
+/**
+ * Gives sizes of {@link FlowLayoutManager} items from adapter data, e.g. from precomputed text widths,
+ * so lines can be broken without inflating and measuring the items.
+ */
+public interface ItemSizeProvider {
+    /**
+     * Sets width and height (including item decoration insets), margins, new line and full line flags and weight of the item.
+     * Margins have to match the layout params of the item view.
+     *
+     * @param position   adapter position
+     * @param definition definition to fill, its view is null while lines are indexed
+     * @return false if the size is not known, the item is measured then
+     */
+    boolean getItemSize(int position, ViewDefinition definition);
+}